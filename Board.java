@@ -0,0 +1,699 @@
+import java.util.*;
+
+// Headless chess position shared by all front ends: board, move generation, make/unmake and game status.
+// Squares are numbered y * 8 + x with (0, 0) = a8, matching the screen layout of the front ends.
+public class Board {
+    public static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+    public static final char EMPTY = '.';
+    public static final int MAX_MOVES = 256;
+
+    // Castling rights bits
+    static final int WHITE_KINGSIDE = 1;
+    static final int WHITE_QUEENSIDE = 2;
+    static final int BLACK_KINGSIDE = 4;
+    static final int BLACK_QUEENSIDE = 8;
+
+    // Promotion piece codes stored in bits 12-14 of a move
+    private static final String PROMOTION_PIECES = ".NBRQ";
+
+    private static final int[][] KNIGHT_STEPS = {{2, 1}, {2, -1}, {-2, 1}, {-2, -1}, {1, 2}, {1, -2}, {-1, 2}, {-1, -2}};
+    private static final int[][] KING_STEPS = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}, {1, 1}, {-1, 1}, {1, -1}, {-1, -1}};
+    private static final int[][] ROOK_DIRECTIONS = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+    private static final int[][] BISHOP_DIRECTIONS = {{1, 1}, {-1, 1}, {1, -1}, {-1, -1}};
+
+    // Castling rights that survive a move touching each square
+    private static final int[] CASTLING_MASK = new int[64];
+
+    static {
+        Arrays.fill(CASTLING_MASK, 15);
+        CASTLING_MASK[0] = ~BLACK_QUEENSIDE & 15;
+        CASTLING_MASK[4] = ~(BLACK_KINGSIDE | BLACK_QUEENSIDE) & 15;
+        CASTLING_MASK[7] = ~BLACK_KINGSIDE & 15;
+        CASTLING_MASK[56] = ~WHITE_QUEENSIDE & 15;
+        CASTLING_MASK[60] = ~(WHITE_KINGSIDE | WHITE_QUEENSIDE) & 15;
+        CASTLING_MASK[63] = ~WHITE_KINGSIDE & 15;
+    }
+
+    // Zobrist keys: one per piece and square, side to move, castling rights and en passant square
+    private static final int[] PIECE_INDEX = new int[128];
+    private static final long[] PIECE_KEYS = new long[12 * 64];
+    private static final long[] CASTLING_KEYS = new long[16];
+    private static final long[] EP_KEYS = new long[64];
+    private static final long SIDE_KEY;
+
+    static {
+        String pieces = "PNBRQKpnbrqk";
+        for (int i = 0; i < pieces.length(); i++) {
+            PIECE_INDEX[pieces.charAt(i)] = i;
+        }
+        // Fixed seed so keys are stable across runs
+        SplittableRandom random = new SplittableRandom(0x5EED_C4E55L);
+        for (int i = 0; i < PIECE_KEYS.length; i++) PIECE_KEYS[i] = random.nextLong();
+        for (int i = 0; i < CASTLING_KEYS.length; i++) CASTLING_KEYS[i] = random.nextLong();
+        for (int i = 0; i < EP_KEYS.length; i++) EP_KEYS[i] = random.nextLong();
+        SIDE_KEY = random.nextLong();
+    }
+
+    public enum Status {
+        ONGOING("Game in progress"),
+        CHECKMATE("Checkmate"),
+        STALEMATE("Stalemate"),
+        DRAW_REPETITION("Draw by threefold repetition"),
+        DRAW_FIFTY_MOVES("Draw by the fifty-move rule"),
+        DRAW_INSUFFICIENT_MATERIAL("Draw by insufficient material");
+
+        public final String description;
+
+        Status(String description) {
+            this.description = description;
+        }
+
+        public boolean isDraw() {
+            return this != ONGOING && this != CHECKMATE;
+        }
+    }
+
+    private final char[] squares = new char[64];
+    private boolean whiteToMove;
+    private int castlingRights;
+    private int epSquare = -1;
+    private int halfmoveClock;
+    private int fullmoveNumber = 1;
+    private int whiteKing;
+    private int blackKing;
+    private long key;
+    private long pawnKey;
+
+    // Undo history, one entry per made move: the move, the packed state it destroyed and the keys before it
+    private int[] historyMoves = new int[128];
+    private long[] historyState = new long[128];
+    private long[] historyKeys = new long[128];
+    private long[] historyPawnKeys = new long[128];
+    private int historySize;
+
+    // Standard starting position
+    public Board() {
+        this(START_FEN);
+    }
+
+    public Board(String fen) {
+        setFen(fen);
+    }
+
+    private Board(Board other) {
+        System.arraycopy(other.squares, 0, squares, 0, 64);
+        whiteToMove = other.whiteToMove;
+        castlingRights = other.castlingRights;
+        epSquare = other.epSquare;
+        halfmoveClock = other.halfmoveClock;
+        fullmoveNumber = other.fullmoveNumber;
+        whiteKing = other.whiteKing;
+        blackKing = other.blackKing;
+        key = other.key;
+        pawnKey = other.pawnKey;
+        historyMoves = other.historyMoves.clone();
+        historyState = other.historyState.clone();
+        historyKeys = other.historyKeys.clone();
+        historyPawnKeys = other.historyPawnKeys.clone();
+        historySize = other.historySize;
+    }
+
+    // Independent copy, including the undo history
+    public Board copy() {
+        return new Board(this);
+    }
+
+    // Move encoding: from square in bits 6-11, to square in bits 0-5, promotion piece in bits 12-14
+    public static int encodeMove(int from, int to, int promotion) {
+        return (promotion << 12) | (from << 6) | to;
+    }
+
+    public static int from(int move) { return (move >> 6) & 63; }
+    public static int to(int move) { return move & 63; }
+    public static int promotion(int move) { return (move >> 12) & 7; }
+
+    // Coordinate notation, e.g. e2e4 or e7e8q
+    public static String moveToString(int move) {
+        String s = squareName(from(move)) + squareName(to(move));
+        return promotion(move) == 0 ? s : s + Character.toLowerCase(PROMOTION_PIECES.charAt(promotion(move)));
+    }
+
+    public static String squareName(int square) {
+        return "" + (char) ('a' + (square & 7)) + (8 - (square >> 3));
+    }
+
+    public static boolean isWhite(char piece) {
+        return piece >= 'A' && piece <= 'Z';
+    }
+
+    public static boolean isBlack(char piece) {
+        return piece >= 'a' && piece <= 'z';
+    }
+
+    public char pieceAt(int square) {
+        return squares[square];
+    }
+
+    public char pieceAt(int x, int y) {
+        return squares[y * 8 + x];
+    }
+
+    public boolean isWhiteToMove() {
+        return whiteToMove;
+    }
+
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    public int getFullmoveNumber() {
+        return fullmoveNumber;
+    }
+
+    // Zobrist hash of the whole position
+    public long getKey() {
+        return key;
+    }
+
+    // Zobrist hash of the pawns of both sides only
+    public long getPawnKey() {
+        return pawnKey;
+    }
+
+    // Number of moves made on this board that can still be unmade
+    public int historySize() {
+        return historySize;
+    }
+
+    // Load a position from FEN, clearing the undo history
+    public void setFen(String fen) {
+        String[] fields = fen.trim().split("\\s+");
+        String[] ranks = fields[0].split("/");
+        if (ranks.length != 8) throw new IllegalArgumentException("Bad FEN: " + fen);
+        Arrays.fill(squares, EMPTY);
+        int kings = 0;
+        for (int y = 0; y < 8; y++) {
+            int x = 0;
+            for (char c : ranks[y].toCharArray()) {
+                if (c >= '1' && c <= '8') {
+                    x += c - '0';
+                } else {
+                    if (x >= 8 || "PNBRQKpnbrqk".indexOf(c) < 0) throw new IllegalArgumentException("Bad FEN: " + fen);
+                    squares[y * 8 + x] = c;
+                    if (c == 'K') { whiteKing = y * 8 + x; kings += 1; }
+                    if (c == 'k') { blackKing = y * 8 + x; kings += 16; }
+                    x++;
+                }
+            }
+            if (x != 8) throw new IllegalArgumentException("Bad FEN: " + fen);
+        }
+        if (kings != 17) throw new IllegalArgumentException("FEN needs one king per side: " + fen);
+
+        whiteToMove = fields.length < 2 || fields[1].equals("w");
+        castlingRights = 0;
+        if (fields.length > 2) {
+            for (char c : fields[2].toCharArray()) {
+                if (c == 'K') castlingRights |= WHITE_KINGSIDE;
+                if (c == 'Q') castlingRights |= WHITE_QUEENSIDE;
+                if (c == 'k') castlingRights |= BLACK_KINGSIDE;
+                if (c == 'q') castlingRights |= BLACK_QUEENSIDE;
+            }
+        }
+        // Stale castling rights are common in hand-written FENs; keep only those whose king and rook are at home
+        if (squares[60] != 'K') castlingRights &= ~(WHITE_KINGSIDE | WHITE_QUEENSIDE);
+        if (squares[63] != 'R') castlingRights &= ~WHITE_KINGSIDE;
+        if (squares[56] != 'R') castlingRights &= ~WHITE_QUEENSIDE;
+        if (squares[4] != 'k') castlingRights &= ~(BLACK_KINGSIDE | BLACK_QUEENSIDE);
+        if (squares[7] != 'r') castlingRights &= ~BLACK_KINGSIDE;
+        if (squares[0] != 'r') castlingRights &= ~BLACK_QUEENSIDE;
+        // Likewise keep the en passant square only if a pawn can just have passed over it
+        epSquare = fields.length > 3 && fields[3].matches("[a-h][36]")
+            ? (8 - (fields[3].charAt(1) - '0')) * 8 + (fields[3].charAt(0) - 'a') : -1;
+        if (epSquare >= 0) {
+            boolean valid = whiteToMove
+                ? epSquare >> 3 == 2 && squares[epSquare + 8] == 'p'
+                : epSquare >> 3 == 5 && squares[epSquare - 8] == 'P';
+            if (!valid || squares[epSquare] != EMPTY) epSquare = -1;
+        }
+        halfmoveClock = fields.length > 4 ? Integer.parseInt(fields[4]) : 0;
+        fullmoveNumber = fields.length > 5 ? Integer.parseInt(fields[5]) : 1;
+        historySize = 0;
+        computeKeys();
+    }
+
+    // Hash the position from scratch; makeMove maintains the keys incrementally afterwards
+    private void computeKeys() {
+        key = 0;
+        pawnKey = 0;
+        for (int square = 0; square < 64; square++) {
+            char piece = squares[square];
+            if (piece == EMPTY) continue;
+            key ^= pieceKey(piece, square);
+            if (piece == 'P' || piece == 'p') pawnKey ^= pieceKey(piece, square);
+        }
+        key ^= CASTLING_KEYS[castlingRights];
+        if (epSquare >= 0) key ^= EP_KEYS[epSquare];
+        if (!whiteToMove) key ^= SIDE_KEY;
+    }
+
+    private static long pieceKey(char piece, int square) {
+        return PIECE_KEYS[PIECE_INDEX[piece] * 64 + square];
+    }
+
+    private void placePiece(int square, char piece) {
+        squares[square] = piece;
+        key ^= pieceKey(piece, square);
+        if (piece == 'P' || piece == 'p') pawnKey ^= pieceKey(piece, square);
+    }
+
+    private void clearSquare(int square) {
+        char piece = squares[square];
+        if (piece == EMPTY) return;
+        squares[square] = EMPTY;
+        key ^= pieceKey(piece, square);
+        if (piece == 'P' || piece == 'p') pawnKey ^= pieceKey(piece, square);
+    }
+
+    public String toFen() {
+        StringBuilder sb = new StringBuilder();
+        for (int y = 0; y < 8; y++) {
+            int empty = 0;
+            for (int x = 0; x < 8; x++) {
+                char piece = squares[y * 8 + x];
+                if (piece == EMPTY) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) sb.append(empty);
+                empty = 0;
+                sb.append(piece);
+            }
+            if (empty > 0) sb.append(empty);
+            if (y < 7) sb.append('/');
+        }
+        sb.append(whiteToMove ? " w " : " b ");
+        if (castlingRights == 0) sb.append('-');
+        if ((castlingRights & WHITE_KINGSIDE) != 0) sb.append('K');
+        if ((castlingRights & WHITE_QUEENSIDE) != 0) sb.append('Q');
+        if ((castlingRights & BLACK_KINGSIDE) != 0) sb.append('k');
+        if ((castlingRights & BLACK_QUEENSIDE) != 0) sb.append('q');
+        sb.append(' ').append(epSquare < 0 ? "-" : squareName(epSquare));
+        sb.append(' ').append(halfmoveClock).append(' ').append(fullmoveNumber);
+        return sb.toString();
+    }
+
+    // Pseudo-legal moves for the side to move; returns the number written to moves
+    public int generateMoves(int[] moves, boolean capturesOnly) {
+        int count = 0;
+        for (int from = 0; from < 64; from++) {
+            char piece = squares[from];
+            if (piece == EMPTY || isWhite(piece) != whiteToMove) continue;
+            int x = from & 7;
+            int y = from >> 3;
+            switch (Character.toUpperCase(piece)) {
+                case 'P':
+                    count = generatePawnMoves(moves, count, from, x, y, capturesOnly);
+                    break;
+                case 'N':
+                    count = generateSteps(moves, count, from, x, y, KNIGHT_STEPS, capturesOnly);
+                    break;
+                case 'B':
+                    count = generateSlides(moves, count, from, x, y, BISHOP_DIRECTIONS, capturesOnly);
+                    break;
+                case 'R':
+                    count = generateSlides(moves, count, from, x, y, ROOK_DIRECTIONS, capturesOnly);
+                    break;
+                case 'Q':
+                    count = generateSlides(moves, count, from, x, y, ROOK_DIRECTIONS, capturesOnly);
+                    count = generateSlides(moves, count, from, x, y, BISHOP_DIRECTIONS, capturesOnly);
+                    break;
+                case 'K':
+                    count = generateSteps(moves, count, from, x, y, KING_STEPS, capturesOnly);
+                    if (!capturesOnly) count = generateCastling(moves, count);
+                    break;
+            }
+        }
+        return count;
+    }
+
+    private int generatePawnMoves(int[] moves, int count, int from, int x, int y, boolean capturesOnly) {
+        int direction = whiteToMove ? -1 : 1;
+        int ny = y + direction;
+        boolean promoting = ny == 0 || ny == 7;
+        int ahead = ny * 8 + x;
+        if (squares[ahead] == EMPTY && (!capturesOnly || promoting)) {
+            count = addPawnMove(moves, count, from, ahead, promoting, capturesOnly);
+            int startRow = whiteToMove ? 6 : 1;
+            int twoAhead = ahead + direction * 8;
+            if (y == startRow && !capturesOnly && squares[twoAhead] == EMPTY) {
+                moves[count++] = encodeMove(from, twoAhead, 0);
+            }
+        }
+        for (int dx = -1; dx <= 1; dx += 2) {
+            int nx = x + dx;
+            if (nx < 0 || nx >= 8) continue;
+            int to = ny * 8 + nx;
+            char target = squares[to];
+            if (to == epSquare || (target != EMPTY && isWhite(target) != whiteToMove)) {
+                count = addPawnMove(moves, count, from, to, promoting, false);
+            }
+        }
+        return count;
+    }
+
+    // Quiet searches only need the queen promotion; full generation adds the under-promotions
+    private int addPawnMove(int[] moves, int count, int from, int to, boolean promoting, boolean queenOnly) {
+        if (!promoting) {
+            moves[count++] = encodeMove(from, to, 0);
+        } else if (queenOnly) {
+            moves[count++] = encodeMove(from, to, 4);
+        } else {
+            for (int promotion = 4; promotion >= 1; promotion--) {
+                moves[count++] = encodeMove(from, to, promotion);
+            }
+        }
+        return count;
+    }
+
+    private int generateSteps(int[] moves, int count, int from, int x, int y, int[][] steps, boolean capturesOnly) {
+        for (int[] step : steps) {
+            int nx = x + step[0];
+            int ny = y + step[1];
+            if (nx < 0 || nx >= 8 || ny < 0 || ny >= 8) continue;
+            char target = squares[ny * 8 + nx];
+            if (target == EMPTY ? !capturesOnly : isWhite(target) != whiteToMove) {
+                moves[count++] = encodeMove(from, ny * 8 + nx, 0);
+            }
+        }
+        return count;
+    }
+
+    private int generateSlides(int[] moves, int count, int from, int x, int y, int[][] directions, boolean capturesOnly) {
+        for (int[] direction : directions) {
+            int nx = x + direction[0];
+            int ny = y + direction[1];
+            while (nx >= 0 && nx < 8 && ny >= 0 && ny < 8) {
+                char target = squares[ny * 8 + nx];
+                if (target == EMPTY) {
+                    if (!capturesOnly) moves[count++] = encodeMove(from, ny * 8 + nx, 0);
+                } else {
+                    if (isWhite(target) != whiteToMove) moves[count++] = encodeMove(from, ny * 8 + nx, 0);
+                    break;
+                }
+                nx += direction[0];
+                ny += direction[1];
+            }
+        }
+        return count;
+    }
+
+    // The king may not castle out of, through or into check
+    private int generateCastling(int[] moves, int count) {
+        int king = whiteToMove ? 60 : 4;
+        int kingside = whiteToMove ? WHITE_KINGSIDE : BLACK_KINGSIDE;
+        int queenside = whiteToMove ? WHITE_QUEENSIDE : BLACK_QUEENSIDE;
+        if ((castlingRights & (kingside | queenside)) == 0 || isSquareAttacked(king, !whiteToMove)) {
+            return count;
+        }
+        if ((castlingRights & kingside) != 0 && squares[king + 1] == EMPTY && squares[king + 2] == EMPTY
+                && !isSquareAttacked(king + 1, !whiteToMove) && !isSquareAttacked(king + 2, !whiteToMove)) {
+            moves[count++] = encodeMove(king, king + 2, 0);
+        }
+        if ((castlingRights & queenside) != 0 && squares[king - 1] == EMPTY && squares[king - 2] == EMPTY
+                && squares[king - 3] == EMPTY
+                && !isSquareAttacked(king - 1, !whiteToMove) && !isSquareAttacked(king - 2, !whiteToMove)) {
+            moves[count++] = encodeMove(king, king - 2, 0);
+        }
+        return count;
+    }
+
+    // Legal moves for the side to move; returns the number written to moves
+    public int generateLegalMoves(int[] moves) {
+        int pseudo = generateMoves(moves, false);
+        int count = 0;
+        for (int i = 0; i < pseudo; i++) {
+            if (isLegal(moves[i])) moves[count++] = moves[i];
+        }
+        return count;
+    }
+
+    public List<Integer> legalMoves() {
+        int[] moves = new int[MAX_MOVES];
+        int count = generateLegalMoves(moves);
+        List<Integer> list = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) list.add(moves[i]);
+        return list;
+    }
+
+    // Legal moves of the piece standing on (x, y)
+    public List<Integer> legalMovesFrom(int x, int y) {
+        List<Integer> moves = new ArrayList<>();
+        for (int move : legalMoves()) {
+            if (from(move) == y * 8 + x) moves.add(move);
+        }
+        return moves;
+    }
+
+    // The legal move between two squares (promoting to a queen), or 0 if there is none
+    public int findMove(int fromX, int fromY, int toX, int toY) {
+        for (int move : legalMovesFrom(fromX, fromY)) {
+            if (to(move) == toY * 8 + toX && (promotion(move) == 0 || promotion(move) == 4)) return move;
+        }
+        return 0;
+    }
+
+    // True if a pseudo-legal move does not leave the mover's king in check
+    public boolean isLegal(int move) {
+        boolean legal = makeLegalMove(move);
+        if (legal) unmakeMove();
+        return legal;
+    }
+
+    // Make a pseudo-legal move if it is legal; otherwise leave the board unchanged and return false
+    public boolean makeLegalMove(int move) {
+        makeMove(move);
+        if (isSquareAttacked(whiteToMove ? blackKing : whiteKing, whiteToMove)) {
+            unmakeMove();
+            return false;
+        }
+        return true;
+    }
+
+    public boolean isInCheck() {
+        return isSquareAttacked(whiteToMove ? whiteKing : blackKing, !whiteToMove);
+    }
+
+    public Status status() {
+        if (generateLegalMoves(new int[MAX_MOVES]) == 0) {
+            return isInCheck() ? Status.CHECKMATE : Status.STALEMATE;
+        }
+        if (halfmoveClock >= 100) return Status.DRAW_FIFTY_MOVES;
+        if (repetitionCount() >= 2) return Status.DRAW_REPETITION;
+        if (hasInsufficientMaterial()) return Status.DRAW_INSUFFICIENT_MATERIAL;
+        return Status.ONGOING;
+    }
+
+    // Earlier occurrences of the current position. Only positions since the last capture or pawn move can
+    // repeat, and only every second ply with the same side to move, so this is O(halfmoveClock).
+    public int repetitionCount() {
+        int count = 0;
+        int oldest = Math.max(0, historySize - halfmoveClock);
+        for (int i = historySize - 2; i >= oldest; i -= 2) {
+            if (historyKeys[i] == key) count++;
+        }
+        return count;
+    }
+
+    // True if the current position has occurred before; the search treats this as a draw
+    public boolean isRepetition() {
+        int oldest = Math.max(0, historySize - halfmoveClock);
+        for (int i = historySize - 2; i >= oldest; i -= 2) {
+            if (historyKeys[i] == key) return true;
+        }
+        return false;
+    }
+
+    // Neither side can mate: bare kings, a single minor piece, or bishops all on one square colour
+    public boolean hasInsufficientMaterial() {
+        int minors = 0;
+        int bishopColours = 0;
+        boolean knights = false;
+        for (int square = 0; square < 64; square++) {
+            char piece = squares[square];
+            switch (piece) {
+                case EMPTY: case 'K': case 'k':
+                    break;
+                case 'B': case 'b':
+                    minors++;
+                    bishopColours |= 1 << (((square >> 3) + (square & 7)) & 1);
+                    break;
+                case 'N': case 'n':
+                    minors++;
+                    knights = true;
+                    break;
+                default:
+                    return false; // Pawn, rook or queen
+            }
+        }
+        return minors <= 1 || (!knights && bishopColours != 3);
+    }
+
+    // True if a piece of the given colour attacks the square
+    public boolean isSquareAttacked(int square, boolean byWhite) {
+        int x = square & 7;
+        int y = square >> 3;
+        int pawnY = byWhite ? y + 1 : y - 1;
+        char pawn = byWhite ? 'P' : 'p';
+        if (pawnY >= 0 && pawnY < 8) {
+            if (x > 0 && squares[pawnY * 8 + x - 1] == pawn) return true;
+            if (x < 7 && squares[pawnY * 8 + x + 1] == pawn) return true;
+        }
+        if (attackedByStep(x, y, KNIGHT_STEPS, byWhite ? 'N' : 'n')) return true;
+        if (attackedByStep(x, y, KING_STEPS, byWhite ? 'K' : 'k')) return true;
+        if (attackedBySlide(x, y, ROOK_DIRECTIONS, byWhite ? 'R' : 'r', byWhite ? 'Q' : 'q')) return true;
+        return attackedBySlide(x, y, BISHOP_DIRECTIONS, byWhite ? 'B' : 'b', byWhite ? 'Q' : 'q');
+    }
+
+    private boolean attackedByStep(int x, int y, int[][] steps, char attacker) {
+        for (int[] step : steps) {
+            int nx = x + step[0];
+            int ny = y + step[1];
+            if (nx >= 0 && nx < 8 && ny >= 0 && ny < 8 && squares[ny * 8 + nx] == attacker) return true;
+        }
+        return false;
+    }
+
+    private boolean attackedBySlide(int x, int y, int[][] directions, char slider, char queen) {
+        for (int[] direction : directions) {
+            int nx = x + direction[0];
+            int ny = y + direction[1];
+            while (nx >= 0 && nx < 8 && ny >= 0 && ny < 8) {
+                char piece = squares[ny * 8 + nx];
+                if (piece != EMPTY) {
+                    if (piece == slider || piece == queen) return true;
+                    break;
+                }
+                nx += direction[0];
+                ny += direction[1];
+            }
+        }
+        return false;
+    }
+
+    // Make a pseudo-legal move; the previous state is pushed so unmakeMove can restore it
+    public void makeMove(int move) {
+        int from = from(move);
+        int to = to(move);
+        char piece = squares[from];
+        char captured = squares[to];
+
+        if (historySize == historyMoves.length) {
+            historyMoves = Arrays.copyOf(historyMoves, historySize * 2);
+            historyState = Arrays.copyOf(historyState, historySize * 2);
+            historyKeys = Arrays.copyOf(historyKeys, historySize * 2);
+            historyPawnKeys = Arrays.copyOf(historyPawnKeys, historySize * 2);
+        }
+        historyMoves[historySize] = move;
+        historyState[historySize] = captured | (long) castlingRights << 16 | (long) (epSquare + 1) << 20
+            | (long) halfmoveClock << 32;
+        historyKeys[historySize] = key;
+        historyPawnKeys[historySize] = pawnKey;
+        historySize++;
+
+        boolean pawnMove = piece == 'P' || piece == 'p';
+        if (pawnMove && to == epSquare) {
+            clearSquare(to + (whiteToMove ? 8 : -8));
+        }
+        clearSquare(from);
+        clearSquare(to);
+        placePiece(to, promotion(move) == 0 ? piece : promotedPiece(move, whiteToMove));
+
+        if (piece == 'K' || piece == 'k') {
+            if (piece == 'K') whiteKing = to; else blackKing = to;
+            if (to - from == 2) {
+                placePiece(from + 1, squares[from + 3]);
+                clearSquare(from + 3);
+            } else if (from - to == 2) {
+                placePiece(from - 1, squares[from - 4]);
+                clearSquare(from - 4);
+            }
+        }
+
+        key ^= CASTLING_KEYS[castlingRights];
+        castlingRights &= CASTLING_MASK[from] & CASTLING_MASK[to];
+        key ^= CASTLING_KEYS[castlingRights];
+        if (epSquare >= 0) key ^= EP_KEYS[epSquare];
+        epSquare = pawnMove && Math.abs(to - from) == 16 ? (from + to) / 2 : -1;
+        if (epSquare >= 0) key ^= EP_KEYS[epSquare];
+        halfmoveClock = pawnMove || captured != EMPTY ? 0 : halfmoveClock + 1;
+        if (!whiteToMove) fullmoveNumber++;
+        whiteToMove = !whiteToMove;
+        key ^= SIDE_KEY;
+    }
+
+    // Undo the most recent makeMove
+    public void unmakeMove() {
+        historySize--;
+        int move = historyMoves[historySize];
+        long state = historyState[historySize];
+        int from = from(move);
+        int to = to(move);
+
+        whiteToMove = !whiteToMove;
+        if (!whiteToMove) fullmoveNumber--;
+        castlingRights = (int) (state >> 16) & 15;
+        epSquare = (int) (state >> 20 & 127) - 1;
+        halfmoveClock = (int) (state >> 32);
+        key = historyKeys[historySize];
+        pawnKey = historyPawnKeys[historySize];
+
+        char piece = promotion(move) == 0 ? squares[to] : (whiteToMove ? 'P' : 'p');
+        squares[from] = piece;
+        squares[to] = (char) (state & 0xFFFF);
+
+        if ((piece == 'P' || piece == 'p') && to == epSquare) {
+            squares[to + (whiteToMove ? 8 : -8)] = whiteToMove ? 'p' : 'P';
+        }
+        if (piece == 'K' || piece == 'k') {
+            if (piece == 'K') whiteKing = from; else blackKing = from;
+            if (to - from == 2) {
+                squares[from + 3] = squares[from + 1];
+                squares[from + 1] = EMPTY;
+            } else if (from - to == 2) {
+                squares[from - 4] = squares[from - 1];
+                squares[from - 1] = EMPTY;
+            }
+        }
+    }
+
+    private static char promotedPiece(int move, boolean white) {
+        char piece = PROMOTION_PIECES.charAt(promotion(move));
+        return white ? piece : Character.toLowerCase(piece);
+    }
+
+    // Count leaf nodes of the legal move tree; the standard move generator correctness and speed check
+    public long perft(int depth) {
+        int[] moves = new int[MAX_MOVES];
+        int count = generateMoves(moves, false);
+        long nodes = 0;
+        for (int i = 0; i < count; i++) {
+            if (makeLegalMove(moves[i])) {
+                nodes += depth <= 1 ? 1 : perft(depth - 1);
+                unmakeMove();
+            }
+        }
+        return nodes;
+    }
+
+    // Usage: java Board [depth] [fen]; runs a warm-up pass first so the timing reflects JIT-compiled code
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        Board board = new Board(args.length > 1 ? args[1] : START_FEN);
+        board.perft(Math.max(1, depth - 1));
+        long start = System.nanoTime();
+        long nodes = board.perft(depth);
+        long elapsed = Math.max(1, System.nanoTime() - start);
+        System.out.printf("perft(%d) = %d in %d ms (%.0f nodes/s)%n",
+            depth, nodes, elapsed / 1000000, nodes * 1e9 / elapsed);
+    }
+}
@@ -0,0 +1,100 @@
+import java.util.function.LongSupplier;
+
+// Two-sided chess clock with Fischer increment and simple (US) delay; all times in milliseconds
+public class ChessClock {
+    private final long incrementMillis;
+    private final long delayMillis;
+    private final LongSupplier nanoTime;
+    private final long[] remaining = new long[2]; // White, Black
+    private boolean running;
+    private boolean whiteRunning;
+    private long turnStartNanos;
+
+    public ChessClock(long baseMillis, long incrementMillis, long delayMillis) {
+        this(baseMillis, incrementMillis, delayMillis, System::nanoTime);
+    }
+
+    ChessClock(long baseMillis, long incrementMillis, long delayMillis, LongSupplier nanoTime) {
+        this.incrementMillis = incrementMillis;
+        this.delayMillis = delayMillis;
+        this.nanoTime = nanoTime;
+        remaining[0] = baseMillis;
+        remaining[1] = baseMillis;
+    }
+
+    // Parse a time control in seconds, e.g. "300+2" or "60+0d3" (base + increment, optional delay)
+    public static ChessClock fromTimeControl(String timeControl) {
+        String[] delaySplit = timeControl.split("d", 2);
+        String[] baseSplit = delaySplit[0].split("\\+", 2);
+        long base = Math.round(Double.parseDouble(baseSplit[0]) * 1000);
+        long increment = baseSplit.length > 1 ? Math.round(Double.parseDouble(baseSplit[1]) * 1000) : 0;
+        long delay = delaySplit.length > 1 ? Math.round(Double.parseDouble(delaySplit[1]) * 1000) : 0;
+        return new ChessClock(base, increment, delay);
+    }
+
+    public long getIncrementMillis() {
+        return incrementMillis;
+    }
+
+    public long getDelayMillis() {
+        return delayMillis;
+    }
+
+    // Start the clock of the side to move
+    public synchronized void start(boolean whiteToMove) {
+        running = true;
+        whiteRunning = whiteToMove;
+        turnStartNanos = nanoTime.getAsLong();
+    }
+
+    // End the running side's turn: charge its time, add the increment unless it has flagged, start the other side
+    public synchronized void press() {
+        if (!running) return;
+        int side = whiteRunning ? 0 : 1;
+        remaining[side] -= chargedMillis();
+        if (remaining[side] > 0) {
+            remaining[side] += incrementMillis;
+        }
+        start(!whiteRunning);
+    }
+
+    // Stop both clocks, charging the running side for its current turn
+    public synchronized void stop() {
+        if (!running) return;
+        remaining[whiteRunning ? 0 : 1] -= chargedMillis();
+        running = false;
+    }
+
+    public synchronized boolean isRunning() {
+        return running;
+    }
+
+    public synchronized long remainingMillis(boolean white) {
+        long millis = remaining[white ? 0 : 1];
+        if (running && whiteRunning == white) {
+            millis -= chargedMillis();
+        }
+        return millis;
+    }
+
+    public synchronized boolean isFlagged(boolean white) {
+        return remainingMillis(white) <= 0;
+    }
+
+    // Time used on the current turn beyond the delay
+    private long chargedMillis() {
+        long elapsed = (nanoTime.getAsLong() - turnStartNanos) / 1000000;
+        return Math.max(0, elapsed - delayMillis);
+    }
+
+    // Clock display, e.g. 4:59 or 0:09.7 in the last ten seconds
+    public static String format(long millis) {
+        millis = Math.max(0, millis);
+        long minutes = millis / 60000;
+        long seconds = millis / 1000 % 60;
+        if (millis < 10000) {
+            return String.format("%d:%02d.%d", minutes, seconds, millis / 100 % 10);
+        }
+        return String.format("%d:%02d", minutes, seconds);
+    }
+}
@@ -1,46 +1,42 @@
 import java.awt.*;
 import java.awt.event.*;
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.*;
 import javax.swing.*;
 
 public class ChessGame extends Frame implements MouseListener, KeyListener {
     private static final int TILE_SIZE = 80;
     private static final int BOARD_SIZE = TILE_SIZE * 8;
-    private static final String[] INITIAL_PIECES = {
-        "r", "n", "b", "q", "k", "b", "n", "r",
-        "p", "p", "p", "p", "p", "p", "p", "p",
-        ".", ".", ".", ".", ".", ".", ".", ".",
-        ".", ".", ".", ".", ".", ".", ".", ".",
-        ".", ".", ".", ".", ".", ".", ".", ".",
-        ".", ".", ".", ".", ".", ".", ".", ".",
-        "P", "P", "P", "P", "P", "P", "P", "P",
-        "R", "N", "B", "Q", "K", "B", "N", "R"
-    };
-
-    private String[][] board;
-    private String selectedPiece;
+    private static final String SAVE_DIRECTORY = "saved-games";
+    private static final String GAME_ID = "chessgame";
+    private static final int SNAPSHOT_INTERVAL = 64; // Log records before the game is snapshotted again
+
+    private Board board;
+    private boolean pieceSelected;
     private int selectedX, selectedY;
-    private boolean isWhiteTurn = true;
-    private Set<String> whitePieces;
-    private Set<String> blackPieces;
-    private Set<String> validMoves;
-    private Map<String, Image> pieceImages;
+    private PieceImages pieceImages;
     private boolean playWithComputer;
 
-    // Undo and redo stacks
-    private Stack<String[][]> undoStack = new Stack<>();
-    private Stack<String[][]> redoStack = new Stack<>();
+    // Undo and redo stacks of moves
+    private Stack<Integer> undoStack = new Stack<>();
+    private Stack<Integer> redoStack = new Stack<>();
+
+    // Write-ahead log of the game since its last snapshot; null if saving is unavailable
+    private GameStore.Journal journal;
+
+    private interface JournalAction {
+        void apply(GameStore.Journal journal) throws IOException;
+    }
 
     // Constructor to initialize the game
     public ChessGame(boolean playWithComputer) {
         this.playWithComputer = playWithComputer;
-        board = new String[8][8];
-        whitePieces = new HashSet<>(Arrays.asList("P", "R", "N", "B", "Q", "K"));
-        blackPieces = new HashSet<>(Arrays.asList("p", "r", "n", "b", "q", "k"));
-        initializeBoard();
+        board = new Board();
+        resumeSavedGame();
 
         // Load piece images
-        loadPieceImages();
+        pieceImages = new PieceImages();
 
         setSize(BOARD_SIZE, BOARD_SIZE);
         setTitle("Chess Game");
@@ -50,36 +46,77 @@ public class ChessGame extends Frame implements MouseListener, KeyListener {
         setFocusable(true);
         addWindowListener(new WindowAdapter() {
             public void windowClosing(WindowEvent we) {
+                checkpoint();
+                writeJournal(GameStore.Journal::close);
                 dispose();
             }
         });
     }
 
-    // Initialize the chessboard
-    private void initializeBoard() {
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                board[i][j] = INITIAL_PIECES[i * 8 + j];
+    // Restore the game left by the previous run, if any, and open its log. A save that cannot be restored
+    // is quarantined so this and later sessions can still save a new game.
+    private void resumeSavedGame() {
+        GameStore store;
+        try {
+            store = new GameStore(Paths.get(SAVE_DIRECTORY));
+        } catch (IOException e) {
+            System.out.println("Saved games unavailable: " + e.getMessage());
+            return;
+        }
+        try {
+            GameStore.SavedGame saved = store.load(GAME_ID);
+            if (saved != null) {
+                board = saved.board;
+                undoStack.addAll(saved.undoMoves);
+                redoStack.addAll(saved.redoMoves);
+                System.out.println("Resumed saved game after " + undoStack.size() + " moves");
             }
+        } catch (IOException e) {
+            System.out.println("Could not restore saved game, starting a new one: " + e.getMessage());
+            try {
+                store.quarantine(GAME_ID);
+            } catch (IOException moveFailure) {
+                System.out.println("Could not move the broken save aside: " + moveFailure.getMessage());
+            }
+        }
+        try {
+            journal = store.open(GAME_ID);
+        } catch (IOException e) {
+            System.out.println("Could not save game: " + e.getMessage());
+        }
+    }
+
+    // Apply an action to the log; on failure report it and keep playing without saving
+    private void writeJournal(JournalAction action) {
+        if (journal == null) return;
+        try {
+            action.apply(journal);
+        } catch (IOException e) {
+            System.out.println("Could not save game: " + e.getMessage());
+            journal = null;
+        }
+    }
+
+    // Snapshot the whole game so the log can start again from empty
+    private void checkpoint() {
+        writeJournal(j -> j.snapshot(board, undoStack, redoStack));
+    }
+
+    // Snapshot once enough changes have accumulated in the log, keeping restore times short
+    private void checkpointIfDue() {
+        if (journal != null && journal.recordsSinceSnapshot() >= SNAPSHOT_INTERVAL) {
+            checkpoint();
         }
     }
 
-    // Load piece images
-    private void loadPieceImages() {
-        pieceImages = new HashMap<>();
-        // Images should be named wp.png, wr.png, etc., and located in the working directory
-        pieceImages.put("wP", Toolkit.getDefaultToolkit().getImage("wp.png"));
-        pieceImages.put("wR", Toolkit.getDefaultToolkit().getImage("wr.png"));
-        pieceImages.put("wN", Toolkit.getDefaultToolkit().getImage("wn.png"));
-        pieceImages.put("wB", Toolkit.getDefaultToolkit().getImage("wb.png"));
-        pieceImages.put("wQ", Toolkit.getDefaultToolkit().getImage("wq.png"));
-        pieceImages.put("wK", Toolkit.getDefaultToolkit().getImage("wk.png"));
-        pieceImages.put("bP", Toolkit.getDefaultToolkit().getImage("bp.png"));
-        pieceImages.put("bR", Toolkit.getDefaultToolkit().getImage("br.png"));
-        pieceImages.put("bN", Toolkit.getDefaultToolkit().getImage("bn.png"));
-        pieceImages.put("bB", Toolkit.getDefaultToolkit().getImage("bb.png"));
-        pieceImages.put("bQ", Toolkit.getDefaultToolkit().getImage("bq.png"));
-        pieceImages.put("bK", Toolkit.getDefaultToolkit().getImage("bk.png"));
+    // Start over from the initial position, discarding the saved game
+    private void newGame() {
+        board = new Board();
+        undoStack.clear();
+        redoStack.clear();
+        pieceSelected = false;
+        checkpoint();
+        repaint();
     }
 
     // Paint the board and pieces
@@ -91,66 +128,54 @@ public class ChessGame extends Frame implements MouseListener, KeyListener {
                 g.fillRect(j * TILE_SIZE, i * TILE_SIZE, TILE_SIZE, TILE_SIZE);
 
                 // Draw the pieces
-                String piece = board[i][j];
-                if (!piece.equals(".")) {
-                    Image pieceImage = pieceImages.get(getPieceKey(piece));
-                    if (pieceImage != null) {
-                        g.drawImage(pieceImage, j * TILE_SIZE, i * TILE_SIZE, TILE_SIZE, TILE_SIZE, this);
-                    }
+                Image pieceImage = pieceImages.get(board.pieceAt(j, i));
+                if (pieceImage != null) {
+                    g.drawImage(pieceImage, j * TILE_SIZE, i * TILE_SIZE, TILE_SIZE, TILE_SIZE, this);
                 }
             }
         }
     }
 
-    // Utility method to map the piece letter to a key for loading images
-    private String getPieceKey(String piece) {
-        return (Character.isUpperCase(piece.charAt(0)) ? "w" : "b") + piece.toUpperCase();
-    }
-
     // Mouse click event handler to select and move pieces
     public void mouseClicked(MouseEvent e) {
         int x = e.getX() / TILE_SIZE;
         int y = e.getY() / TILE_SIZE;
 
-        if (selectedPiece == null) {
+        if (x >= 8 || y >= 8) {
+            return;
+        }
+
+        if (!pieceSelected) {
             // Select a piece
-            if (!board[y][x].equals(".")) {
-                String piece = board[y][x];
-                if (isWhiteTurn && whitePieces.contains(piece) || !isWhiteTurn && blackPieces.contains(piece)) {
-                    selectedPiece = piece;
-                    selectedX = x;
-                    selectedY = y;
-                }
+            char piece = board.pieceAt(x, y);
+            if (piece != Board.EMPTY && Board.isWhite(piece) == board.isWhiteToMove()) {
+                pieceSelected = true;
+                selectedX = x;
+                selectedY = y;
             }
         } else {
-            // Save the current state before the move
-            undoStack.push(copyBoard(board));
-            redoStack.clear(); // Clear redo stack after a new move
-
-            // Move the piece
-            board[y][x] = selectedPiece;
-            board[selectedY][selectedX] = ".";
-            selectedPiece = null;
-            isWhiteTurn = !isWhiteTurn;
-            repaint();
-        }
-    }
-
-    // Copy the current board state
-    private String[][] copyBoard(String[][] board) {
-        String[][] newBoard = new String[8][8];
-        for (int i = 0; i < 8; i++) {
-            System.arraycopy(board[i], 0, newBoard[i], 0, 8);
+            // Move the piece if the move is legal, otherwise drop the selection
+            int move = board.findMove(selectedX, selectedY, x, y);
+            pieceSelected = false;
+            if (move != 0) {
+                writeJournal(j -> j.logMove(move));
+                board.makeMove(move);
+                undoStack.push(move);
+                redoStack.clear(); // Clear redo stack after a new move
+                checkpointIfDue();
+                repaint();
+            }
         }
-        return newBoard;
     }
 
     // Undo the last move
     private void undoMove() {
         if (!undoStack.isEmpty()) {
-            redoStack.push(copyBoard(board)); // Save the current state to redo stack
-            board = undoStack.pop(); // Restore the previous state
-            isWhiteTurn = !isWhiteTurn;
+            writeJournal(GameStore.Journal::logUndo);
+            board.unmakeMove();
+            redoStack.push(undoStack.pop()); // Save the move to redo stack
+            checkpointIfDue();
+            pieceSelected = false;
             repaint();
         } else {
             System.out.println("No moves to undo!");
@@ -160,21 +185,28 @@ public class ChessGame extends Frame implements MouseListener, KeyListener {
     // Redo the last undone move
     private void redoMove() {
         if (!redoStack.isEmpty()) {
-            undoStack.push(copyBoard(board)); // Save the current state to undo stack
-            board = redoStack.pop(); // Restore the next state
-            isWhiteTurn = !isWhiteTurn;
+            writeJournal(GameStore.Journal::logRedo);
+            int move = redoStack.pop(); // Replay the next move
+            board.makeMove(move);
+            undoStack.push(move);
+            checkpointIfDue();
+            pieceSelected = false;
             repaint();
         } else {
             System.out.println("No moves to redo!");
         }
     }
 
-    // Key bindings for undo (Ctrl+Z) and redo (Ctrl+Y)
+    // Key bindings for undo (Ctrl+Z), redo (Ctrl+Y), save (Ctrl+S) and new game (Ctrl+N)
     public void keyPressed(KeyEvent e) {
         if (e.isControlDown() && e.getKeyCode() == KeyEvent.VK_Z) {
             undoMove();
         } else if (e.isControlDown() && e.getKeyCode() == KeyEvent.VK_Y) {
             redoMove();
+        } else if (e.isControlDown() && e.getKeyCode() == KeyEvent.VK_S) {
+            checkpoint();
+        } else if (e.isControlDown() && e.getKeyCode() == KeyEvent.VK_N) {
+            newGame();
         }
     }
 
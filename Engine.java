@@ -0,0 +1,478 @@
+import java.util.*;
+
+public class Engine {
+    public static final int MATE_SCORE = 100000;
+    private static final int INFINITY = 1000000;
+    private static final int MAX_PLY = 64;
+    private static final int DEFAULT_EVAL_CACHE_MB = 4;
+    private static final int DEFAULT_PAWN_HASH_MB = 1;
+    private static final int DOUBLED_PAWN_PENALTY = 15;
+    private static final int ISOLATED_PAWN_PENALTY = 12;
+    private static final int[] PASSED_PAWN_BONUS = {0, 5, 10, 20, 35, 60, 100, 0}; // By ranks advanced
+
+    private int multiPv;
+    private int maxDepth;
+    private Search currentSearch;
+    // Shared by overlapping searches, so both tables tolerate unsynchronised access; null when disabled
+    private EvalCache evalCache = new EvalCache("eval", DEFAULT_EVAL_CACHE_MB);
+    private EvalCache pawnCache = new EvalCache("pawn", DEFAULT_PAWN_HASH_MB);
+
+    // Receives analysis updates from the search thread
+    public interface AnalysisListener {
+        void onAnalysis(Analysis analysis);
+    }
+
+    // One candidate move with its principal variation; score is from White's point of view
+    public static class Line {
+        public final int move;
+        public final int score;
+        public final int[] pv;
+
+        Line(int move, int score, int[] pv) {
+            this.move = move;
+            this.score = score;
+            this.pv = pv;
+        }
+
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (int m : pv) {
+                if (sb.length() > 0) sb.append(' ');
+                sb.append(Board.moveToString(m));
+            }
+            return formatScore(score) + " " + sb;
+        }
+    }
+
+    // Snapshot of the search after a completed iteration
+    public static class Analysis {
+        public final int depth;
+        public final long nodes;
+        public final long elapsedMillis;
+        public final List<Line> lines;
+
+        Analysis(int depth, long nodes, long elapsedMillis, List<Line> lines) {
+            this.depth = depth;
+            this.nodes = nodes;
+            this.elapsedMillis = elapsedMillis;
+            this.lines = Collections.unmodifiableList(lines);
+        }
+
+        // Evaluation of the best line from White's point of view
+        public int score() {
+            return lines.isEmpty() ? 0 : lines.get(0).score;
+        }
+    }
+
+    public Engine(int multiPv, int maxDepth) {
+        this.multiPv = Math.max(1, multiPv);
+        this.maxDepth = Math.min(maxDepth, MAX_PLY - 1);
+    }
+
+    // Set an engine option by name, e.g. from a match configuration
+    public void setOption(String name, String value) {
+        switch (name.toLowerCase()) {
+            case "multipv":
+                multiPv = Math.max(1, Integer.parseInt(value));
+                break;
+            case "depth":
+                maxDepth = Math.min(Integer.parseInt(value), MAX_PLY - 1);
+                break;
+            case "evalcache":
+                evalCache = Integer.parseInt(value) > 0 ? new EvalCache("eval", Integer.parseInt(value)) : null;
+                break;
+            case "pawnhash":
+                pawnCache = Integer.parseInt(value) > 0 ? new EvalCache("pawn", Integer.parseInt(value)) : null;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown engine option: " + name);
+        }
+    }
+
+    // Search on the calling thread for at most maxMillis (depth 1 always completes) and return the last analysis
+    public Analysis think(Board board, long maxMillis) {
+        Analysis[] result = new Analysis[1];
+        Search search = new Search(board.copy(), analysis -> result[0] = analysis);
+        search.deadline = System.nanoTime() + maxMillis * 1000000L;
+        search.run();
+        return result[0];
+    }
+
+    // Search on the calling thread with a budget from the time manager and return the last analysis
+    public Analysis think(Board board, TimeManager timeManager) {
+        Analysis[] result = new Analysis[1];
+        Search search = new Search(board.copy(), analysis -> result[0] = analysis);
+        search.deadline = System.nanoTime() + timeManager.maximumMillis() * 1000000L;
+        search.timeManager = timeManager;
+        search.run();
+        return result[0];
+    }
+
+    // Start analysing a copy of the board in the background, replacing any running analysis
+    public synchronized void startAnalysis(Board board, AnalysisListener listener) {
+        stop();
+        currentSearch = new Search(board.copy(), listener);
+        Thread worker = new Thread(currentSearch, "engine-analysis");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    // Stop the running analysis; no further updates are delivered for it
+    public synchronized void stop() {
+        if (currentSearch != null) {
+            currentSearch.stopped = true;
+            currentSearch = null;
+        }
+    }
+
+    // Human readable score, e.g. +0.35 or #3
+    public static String formatScore(int score) {
+        if (isMateScore(score)) {
+            int movesToMate = (MATE_SCORE - Math.abs(score) + 1) / 2;
+            return (score > 0 ? "#" : "#-") + movesToMate;
+        }
+        return String.format("%+.2f", score / 100.0);
+    }
+
+    public static boolean isMateScore(int score) {
+        return Math.abs(score) > MATE_SCORE - MAX_PLY;
+    }
+
+    // Piece values in centipawns
+    static int pieceValue(char piece) {
+        switch (Character.toUpperCase(piece)) {
+            case 'P': return 100;
+            case 'N': return 320;
+            case 'B': return 330;
+            case 'R': return 500;
+            case 'Q': return 900;
+            default: return 0;
+        }
+    }
+
+    // Forget all cached evaluations, e.g. so each game of a match starts from the same state
+    public void clearCaches() {
+        if (evalCache != null) evalCache.clear();
+        if (pawnCache != null) pawnCache.clear();
+    }
+
+    // Hit rates of the evaluation caches
+    public String cacheStatistics() {
+        return (evalCache == null ? "eval cache off" : evalCache.toString()) + "; "
+            + (pawnCache == null ? "pawn cache off" : pawnCache.toString());
+    }
+
+    // Usage: java Engine [depth] [Option=value ...]; fixed-depth search over a few positions after a warm-up pass
+    public static void main(String[] args) {
+        String[] positions = {
+            Board.START_FEN,
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+            "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+            "r1bq1rk1/pp2bppp/2n1pn2/3p4/2PP4/2N1PN2/PP3PPP/R2QKB1R w KQ - 0 8"
+        };
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        long noLimit = 24L * 60 * 60 * 1000;
+        Engine engine = null;
+        // The first pass only warms up the JIT; the timed pass starts with fresh, empty caches
+        for (int pass = 0; pass < 2; pass++) {
+            engine = new Engine(1, depth);
+            for (int i = 1; i < args.length; i++) {
+                String[] kv = args[i].split("=", 2);
+                engine.setOption(kv[0], kv[1]);
+            }
+            if (pass == 0) {
+                for (String fen : positions) engine.think(new Board(fen), noLimit);
+            }
+        }
+
+        long nodes = 0;
+        long start = System.nanoTime();
+        for (String fen : positions) {
+            Analysis analysis = engine.think(new Board(fen), noLimit);
+            nodes += analysis.nodes;
+            System.out.println(fen + "  " + analysis.lines.get(0));
+        }
+        long elapsed = Math.max(1, System.nanoTime() - start);
+        System.out.printf("depth %d: %d nodes in %d ms (%.0f nodes/s)%n", depth, nodes, elapsed / 1000000, nodes * 1e9 / elapsed);
+        System.out.println(engine.cacheStatistics());
+    }
+
+    // Static evaluation from White's point of view, through the eval cache
+    int evaluate(Board board) {
+        if (evalCache != null) {
+            int cached = evalCache.probe(board.getKey());
+            if (cached != Integer.MIN_VALUE) return cached;
+        }
+        int score = evaluatePieces(board);
+        if (pawnCache == null) {
+            score += evaluatePawnStructure(board);
+        } else {
+            int pawns = pawnCache.probe(board.getPawnKey());
+            if (pawns == Integer.MIN_VALUE) {
+                pawns = evaluatePawnStructure(board);
+                pawnCache.store(board.getPawnKey(), pawns);
+            }
+            score += pawns;
+        }
+        if (evalCache != null) {
+            evalCache.store(board.getKey(), score);
+        }
+        return score;
+    }
+
+    // Doubled, isolated and passed pawns from White's point of view; depends on the pawns only
+    static int evaluatePawnStructure(Board board) {
+        int[] whiteCount = new int[8];
+        int[] blackCount = new int[8];
+        int[] whiteRearmost = new int[8]; // Largest row holding a white pawn, -1 if none
+        int[] blackRearmost = new int[8]; // Smallest row holding a black pawn, 8 if none
+        Arrays.fill(whiteRearmost, -1);
+        Arrays.fill(blackRearmost, 8);
+        for (int square = 8; square < 56; square++) {
+            char piece = board.pieceAt(square);
+            int x = square & 7;
+            int y = square >> 3;
+            if (piece == 'P') {
+                whiteCount[x]++;
+                whiteRearmost[x] = Math.max(whiteRearmost[x], y);
+            } else if (piece == 'p') {
+                blackCount[x]++;
+                blackRearmost[x] = Math.min(blackRearmost[x], y);
+            }
+        }
+
+        int score = 0;
+        for (int square = 8; square < 56; square++) {
+            char piece = board.pieceAt(square);
+            if (piece != 'P' && piece != 'p') continue;
+            int x = square & 7;
+            int y = square >> 3;
+            boolean white = piece == 'P';
+            int[] own = white ? whiteCount : blackCount;
+            boolean isolated = (x == 0 || own[x - 1] == 0) && (x == 7 || own[x + 1] == 0);
+            boolean passed = true;
+            for (int f = Math.max(0, x - 1); f <= Math.min(7, x + 1); f++) {
+                if (white ? blackRearmost[f] < y : whiteRearmost[f] > y) passed = false;
+            }
+            int value = (isolated ? -ISOLATED_PAWN_PENALTY : 0) + (passed ? PASSED_PAWN_BONUS[white ? 7 - y : y] : 0);
+            score += white ? value : -value;
+        }
+        for (int x = 0; x < 8; x++) {
+            score -= Math.max(0, whiteCount[x] - 1) * DOUBLED_PAWN_PENALTY;
+            score += Math.max(0, blackCount[x] - 1) * DOUBLED_PAWN_PENALTY;
+        }
+        return score;
+    }
+
+    // Material plus small piece-square terms from White's point of view
+    static int evaluatePieces(Board board) {
+        int score = 0;
+        for (int square = 0; square < 64; square++) {
+            char piece = board.pieceAt(square);
+            if (piece == Board.EMPTY) continue;
+            int x = square & 7;
+            int y = square >> 3;
+            int value = pieceValue(piece);
+            char type = Character.toUpperCase(piece);
+            int centre = 6 - (Math.abs(2 * x - 7) + Math.abs(2 * y - 7)) / 2;
+            if (type == 'N' || type == 'B') {
+                value += centre * 5;
+            } else if (type == 'P') {
+                int advance = Board.isWhite(piece) ? 6 - y : y - 1;
+                value += advance * 8 + (x >= 2 && x <= 5 ? centre * 3 : 0);
+            } else if (type == 'Q') {
+                value += centre * 2;
+            }
+            score += Board.isWhite(piece) ? value : -value;
+        }
+        return score;
+    }
+
+    // Captures and promotions first, most valuable victim / least valuable attacker
+    private static int orderKey(Board board, int move) {
+        char victim = board.pieceAt(Board.to(move));
+        int key = Board.promotion(move) == 4 ? 8000 : 0;
+        if (victim == Board.EMPTY) return key;
+        return key + pieceValue(victim) * 10 - pieceValue(board.pieceAt(Board.from(move))) / 10 + 1;
+    }
+
+    // Sort moves[0..count) by descending order key
+    private static void orderMoves(Board board, int[] moves, int count, int[] keys) {
+        for (int i = 0; i < count; i++) {
+            keys[i] = orderKey(board, moves[i]);
+        }
+        for (int i = 1; i < count; i++) {
+            int move = moves[i];
+            int key = keys[i];
+            int j = i - 1;
+            while (j >= 0 && keys[j] < key) {
+                moves[j + 1] = moves[j];
+                keys[j + 1] = keys[j];
+                j--;
+            }
+            moves[j + 1] = move;
+            keys[j + 1] = key;
+        }
+    }
+
+    // One analysis run on a private copy of the board: iterative deepening with multi-PV at the root
+    private class Search implements Runnable {
+        private final Board board;
+        private final AnalysisListener listener;
+        private final int[][] pvTable = new int[MAX_PLY + 1][MAX_PLY + 1];
+        private final int[] pvLength = new int[MAX_PLY + 1];
+        private final int[][] moveBuffers = new int[MAX_PLY + 1][Board.MAX_MOVES];
+        private final int[] orderKeys = new int[Board.MAX_MOVES];
+        private volatile boolean stopped;
+        private long deadline = Long.MAX_VALUE;
+        private TimeManager timeManager;
+        private int completedDepth;
+        private long nodes;
+
+        Search(Board board, AnalysisListener listener) {
+            this.board = board;
+            this.listener = listener;
+        }
+
+        public void run() {
+            long start = System.currentTimeMillis();
+            boolean whiteToMove = board.isWhiteToMove();
+            int[] legal = new int[Board.MAX_MOVES];
+            int count = board.generateLegalMoves(legal);
+            if (count == 0) {
+                publish(new Analysis(0, 0, 0, new ArrayList<>()));
+                return;
+            }
+            orderMoves(board, legal, count, orderKeys);
+            List<Integer> rootMoves = new ArrayList<>();
+            for (int i = 0; i < count; i++) rootMoves.add(legal[i]);
+
+            for (int depth = 1; depth <= maxDepth && !checkStop(); depth++) {
+                List<int[]> results = searchRoot(rootMoves, depth);
+                if (results == null) break;
+
+                // Reorder the root by this iteration's scores for the next one
+                rootMoves.clear();
+                List<Line> lines = new ArrayList<>();
+                for (int[] result : results) {
+                    rootMoves.add(result[0]);
+                    if (lines.size() < multiPv) {
+                        int score = whiteToMove ? result[1] : -result[1];
+                        lines.add(new Line(result[0], score, Arrays.copyOfRange(result, 2, result.length)));
+                    }
+                }
+                completedDepth = depth;
+                publish(new Analysis(depth, nodes, System.currentTimeMillis() - start, lines));
+                if (rootMoves.size() == 1 || isMateScore(results.get(0)[1])) break;
+                if (timeManager != null && timeManager.onIteration(results.get(0)[0], results.get(0)[1], rootMoves.size())) {
+                    break;
+                }
+            }
+        }
+
+        // Polled every 1024 nodes; the deadline only applies once a first iteration is complete
+        private boolean checkStop() {
+            if (completedDepth > 0 && deadline != Long.MAX_VALUE && System.nanoTime() > deadline) {
+                stopped = true;
+            }
+            return stopped;
+        }
+
+        private void publish(Analysis analysis) {
+            if (!stopped) {
+                listener.onAnalysis(analysis);
+            }
+        }
+
+        // Returns {move, score, pv...} per root move sorted best first, or null if stopped
+        private List<int[]> searchRoot(List<Integer> rootMoves, int depth) {
+            List<int[]> results = new ArrayList<>();
+            for (int move : rootMoves) {
+                // Only the multiPv best moves need exact scores; the rest may fail low
+                int floor = results.size() >= multiPv ? results.get(multiPv - 1)[1] : -INFINITY;
+                board.makeMove(move);
+                int score = -search(depth - 1, 1, -INFINITY, -floor);
+                board.unmakeMove();
+                if (stopped) return null;
+
+                int[] result = new int[2 + pvLength[1]];
+                result[0] = move;
+                result[1] = score;
+                result[2] = move;
+                for (int i = 1; i < pvLength[1]; i++) {
+                    result[2 + i] = pvTable[1][i];
+                }
+                int index = 0;
+                while (index < results.size() && results.get(index)[1] >= score) index++;
+                results.add(index, result);
+            }
+            return results;
+        }
+
+        private int search(int depth, int ply, int alpha, int beta) {
+            pvLength[ply] = ply;
+            // A repetition inside the tree is scored as a draw at once; it is the usual cause of shuffling.
+            // Material only becomes insufficient through a capture, which resets the halfmove clock.
+            if (board.isRepetition() || (board.getHalfmoveClock() == 0 && board.hasInsufficientMaterial())) {
+                return 0;
+            }
+            // Checkmate takes precedence over the fifty-move rule, as in Board.status()
+            if (board.getHalfmoveClock() >= 100) {
+                return board.isInCheck() && board.generateLegalMoves(moveBuffers[ply]) == 0 ? -MATE_SCORE + ply : 0;
+            }
+            if (depth <= 0 || ply >= MAX_PLY) {
+                return quiesce(ply, alpha, beta);
+            }
+            if ((++nodes & 1023) == 0 && checkStop()) return 0;
+
+            int[] moves = moveBuffers[ply];
+            int count = board.generateMoves(moves, false);
+            orderMoves(board, moves, count, orderKeys);
+            boolean hasLegalMove = false;
+            for (int i = 0; i < count; i++) {
+                int move = moves[i];
+                if (!board.makeLegalMove(move)) continue;
+                hasLegalMove = true;
+                int score = -search(depth - 1, ply + 1, -beta, -alpha);
+                board.unmakeMove();
+                if (stopped) return 0;
+                if (score > alpha) {
+                    alpha = score;
+                    pvTable[ply][ply] = move;
+                    for (int j = ply + 1; j < pvLength[ply + 1]; j++) {
+                        pvTable[ply][j] = pvTable[ply + 1][j];
+                    }
+                    pvLength[ply] = Math.max(pvLength[ply + 1], ply + 1);
+                    if (alpha >= beta) break;
+                }
+            }
+            if (!hasLegalMove) {
+                return board.isInCheck() ? -MATE_SCORE + ply : 0;
+            }
+            return alpha;
+        }
+
+        // Resolve captures so the static evaluation is not taken mid-exchange
+        private int quiesce(int ply, int alpha, int beta) {
+            pvLength[Math.min(ply, MAX_PLY)] = ply;
+            if ((++nodes & 1023) == 0 && checkStop()) return 0;
+            int standPat = board.isWhiteToMove() ? evaluate(board) : -evaluate(board);
+            if (standPat >= beta || ply >= MAX_PLY) return standPat;
+            if (standPat > alpha) alpha = standPat;
+
+            int[] moves = moveBuffers[ply];
+            int count = board.generateMoves(moves, true);
+            orderMoves(board, moves, count, orderKeys);
+            for (int i = 0; i < count; i++) {
+                int move = moves[i];
+                if (!board.makeLegalMove(move)) continue;
+                int score = -quiesce(ply + 1, -beta, -alpha);
+                board.unmakeMove();
+                if (stopped) return 0;
+                if (score >= beta) return score;
+                if (score > alpha) alpha = score;
+            }
+            return alpha;
+        }
+    }
+}
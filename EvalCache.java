@@ -0,0 +1,65 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+// Fixed-size, always-replace cache from a 64-bit position key to a score. Used for whole-position
+// evaluations and for pawn-structure scores. Each slot is two longs, key ^ data and data, written
+// without locks: a slot torn by concurrent writers fails the key check on the next probe and reads
+// as a miss instead of returning another position's score.
+public class EvalCache {
+    private static final int BYTES_PER_ENTRY = 16;
+
+    private final String name;
+    private final long[] table;
+    private final int mask;
+    private final LongAdder probes = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+
+    // The entry count is the largest power of two that fits the memory budget
+    public EvalCache(String name, int megabytes) {
+        long entries = Math.max(1, (long) megabytes * 1024 * 1024 / BYTES_PER_ENTRY);
+        int size = (int) Math.min(Long.highestOneBit(entries), 1 << 28);
+        this.name = name;
+        this.table = new long[size * 2];
+        this.mask = size - 1;
+    }
+
+    // The cached score for key, or Integer.MIN_VALUE on a miss
+    public int probe(long key) {
+        probes.increment();
+        int slot = (int) key & mask;
+        long data = table[slot * 2 + 1];
+        long check = table[slot * 2];
+        if ((check ^ data) != key || data == 0) {
+            return Integer.MIN_VALUE;
+        }
+        hits.increment();
+        return (int) data;
+    }
+
+    public void store(long key, int score) {
+        // Bit 32 marks the slot as used so a stored score of 0 is not mistaken for an empty slot
+        long data = (score & 0xFFFFFFFFL) | (1L << 32);
+        int slot = (int) key & mask;
+        table[slot * 2] = key ^ data;
+        table[slot * 2 + 1] = data;
+    }
+
+    // Empty every slot; the probe and hit counters are kept
+    public void clear() {
+        Arrays.fill(table, 0);
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    public double hitRate() {
+        long n = probes.sum();
+        return n == 0 ? 0 : (double) hits.sum() / n;
+    }
+
+    public String toString() {
+        return String.format("%s cache: %d entries, %d probes, %.1f%% hits",
+            name, capacity(), probes.sum(), hitRate() * 100);
+    }
+}
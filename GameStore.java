@@ -0,0 +1,323 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.CRC32;
+
+// Durable storage for in-progress games. Each game has a compact binary snapshot (<id>.snap) holding the
+// start position and both undo/redo stacks, plus a write-ahead log (<id>.wal) of the moves, undos and redos
+// made since. Restoring reads the snapshot and replays the log; taking a snapshot starts a new log.
+// Both files carry a generation number, so a log left over from a crash between writing a snapshot and
+// resetting the log is recognised as already contained in the snapshot and is not replayed twice.
+public class GameStore {
+    private static final int SNAPSHOT_MAGIC = 0x43485347; // "CHSG"
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int LOG_MAGIC = 0x43485357; // "CHSW"
+    private static final int LOG_HEADER_SIZE = 8;
+    private static final byte RECORD_MOVE = 1;
+    private static final byte RECORD_UNDO = 2;
+    private static final byte RECORD_REDO = 3;
+    private static final int RECORD_SIZE = 4;
+
+    private final Path directory;
+
+    // A restored game: the current position and both move stacks, bottom of the stack first
+    public static class SavedGame {
+        public final Board board;
+        public final List<Integer> undoMoves;
+        public final List<Integer> redoMoves;
+
+        SavedGame(Board board, List<Integer> undoMoves, List<Integer> redoMoves) {
+            this.board = board;
+            this.undoMoves = undoMoves;
+            this.redoMoves = redoMoves;
+        }
+    }
+
+    public GameStore(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+    }
+
+    // Ids of all games with a snapshot or a log in the store
+    public Set<String> gameIds() throws IOException {
+        Set<String> ids = new TreeSet<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.{snap,wal}")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                ids.add(name.substring(0, name.lastIndexOf('.')));
+            }
+        }
+        return ids;
+    }
+
+    // Restore every game in the store, in parallel since each game is independent. A game that cannot be
+    // restored does not stop the others: its files are quarantined and the error is added to failures.
+    public Map<String, SavedGame> loadAll(Map<String, IOException> failures) throws IOException {
+        Map<String, SavedGame> games = new ConcurrentHashMap<>();
+        Map<String, IOException> failed = new ConcurrentHashMap<>();
+        gameIds().parallelStream().forEach(id -> {
+            try {
+                SavedGame game = load(id);
+                if (game != null) games.put(id, game);
+            } catch (IOException e) {
+                try {
+                    quarantine(id);
+                } catch (IOException moveFailure) {
+                    e.addSuppressed(moveFailure);
+                }
+                failed.put(id, e);
+            }
+        });
+        failures.putAll(failed);
+        return games;
+    }
+
+    // Restore one game from its snapshot and log; null if the store has neither
+    public SavedGame load(String gameId) throws IOException {
+        try {
+            return restore(gameId);
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt saved game " + gameId + ": " + e.getMessage(), e);
+        }
+    }
+
+    private SavedGame restore(String gameId) throws IOException {
+        Path snapshot = snapshotFile(gameId);
+        Path log = logFile(gameId);
+        if (!Files.exists(snapshot) && !Files.exists(log)) return null;
+
+        Board board = new Board();
+        Deque<Integer> undo = new ArrayDeque<>();
+        Deque<Integer> redo = new ArrayDeque<>();
+        int generation = 0;
+        if (Files.exists(snapshot)) {
+            generation = readSnapshot(snapshot, board, undo, redo);
+        }
+        if (Files.exists(log)) {
+            replayLog(log, generation, board, undo, redo);
+        }
+        List<Integer> undoMoves = new ArrayList<>(undo);
+        List<Integer> redoMoves = new ArrayList<>(redo);
+        Collections.reverse(undoMoves);
+        Collections.reverse(redoMoves);
+        return new SavedGame(board, undoMoves, redoMoves);
+    }
+
+    // Open the log of a game for appending
+    public Journal open(String gameId) throws IOException {
+        return new Journal(gameId);
+    }
+
+    // Move a game's files aside as <file>.corrupt, out of the store but kept for inspection
+    public void quarantine(String gameId) throws IOException {
+        for (Path file : new Path[] {snapshotFile(gameId), logFile(gameId)}) {
+            if (Files.exists(file)) {
+                Files.move(file, file.resolveSibling(file.getFileName() + ".corrupt"), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    public void delete(String gameId) throws IOException {
+        Files.deleteIfExists(snapshotFile(gameId));
+        Files.deleteIfExists(logFile(gameId));
+    }
+
+    private Path snapshotFile(String gameId) {
+        return directory.resolve(gameId + ".snap");
+    }
+
+    private Path logFile(String gameId) {
+        return directory.resolve(gameId + ".wal");
+    }
+
+    // Generation of the current snapshot, 0 if there is none
+    private int snapshotGeneration(String gameId) throws IOException {
+        Path snapshot = snapshotFile(gameId);
+        if (!Files.exists(snapshot)) return 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readByte() != SNAPSHOT_VERSION) {
+                throw new IOException("Not a game snapshot: " + snapshot);
+            }
+            return in.readInt();
+        }
+    }
+
+    // Snapshot layout: magic, version, generation, start FEN, undo moves, redo moves (2 bytes each),
+    // then a CRC32 of everything before it
+    private static byte[] encodeSnapshot(int generation, Board board, List<Integer> undoMoves, List<Integer> redoMoves)
+            throws IOException {
+        Board start = board.copy();
+        for (int i = 0; i < undoMoves.size(); i++) {
+            start.unmakeMove();
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + 2 * (undoMoves.size() + redoMoves.size()));
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(SNAPSHOT_MAGIC);
+        out.writeByte(SNAPSHOT_VERSION);
+        out.writeInt(generation);
+        out.writeUTF(start.toFen());
+        out.writeShort(undoMoves.size());
+        for (int move : undoMoves) out.writeShort(move);
+        out.writeShort(redoMoves.size());
+        for (int move : redoMoves) out.writeShort(move);
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeInt((int) crc.getValue());
+        return bytes.toByteArray();
+    }
+
+    // Returns the snapshot generation
+    private static int readSnapshot(Path file, Board board, Deque<Integer> undo, Deque<Integer> redo) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        if (bytes.length < 4) throw new IOException("Truncated snapshot " + file);
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length - 4);
+        DataInputStream trailer = new DataInputStream(new ByteArrayInputStream(bytes, bytes.length - 4, 4));
+        if (trailer.readInt() != (int) crc.getValue()) throw new IOException("Snapshot checksum mismatch: " + file);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        if (in.readInt() != SNAPSHOT_MAGIC || in.readByte() != SNAPSHOT_VERSION) {
+            throw new IOException("Not a game snapshot: " + file);
+        }
+        int generation = in.readInt();
+        board.setFen(in.readUTF());
+        int undoCount = in.readUnsignedShort();
+        for (int i = 0; i < undoCount; i++) {
+            int move = in.readUnsignedShort();
+            applyMove(board, move, file);
+            undo.push(move);
+        }
+        int redoCount = in.readUnsignedShort();
+        for (int i = 0; i < redoCount; i++) {
+            redo.push(in.readUnsignedShort());
+        }
+        return generation;
+    }
+
+    // Apply log records in order; a torn or corrupt record at the tail (a crash mid-write) ends the replay
+    private static void replayLog(Path file, int generation, Board board, Deque<Integer> undo, Deque<Integer> redo)
+            throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        if (!isCurrentLog(bytes, generation)) return;
+        int end = validLogLength(bytes);
+        for (int offset = LOG_HEADER_SIZE; offset < end; offset += RECORD_SIZE) {
+            byte type = bytes[offset];
+            int move = (bytes[offset + 1] & 0xFF) << 8 | (bytes[offset + 2] & 0xFF);
+            if (type == RECORD_MOVE) {
+                applyMove(board, move, file);
+                undo.push(move);
+                redo.clear();
+            } else if (type == RECORD_UNDO && !undo.isEmpty()) {
+                board.unmakeMove();
+                redo.push(undo.pop());
+            } else if (type == RECORD_REDO && !redo.isEmpty()) {
+                int next = redo.pop();
+                applyMove(board, next, file);
+                undo.push(next);
+            } else {
+                throw new IOException("Bad log record at offset " + offset + " in " + file);
+            }
+        }
+    }
+
+    private static void applyMove(Board board, int move, Path file) throws IOException {
+        if (!board.legalMoves().contains(move)) {
+            throw new IOException("Illegal move " + Board.moveToString(move) + " in " + file);
+        }
+        board.makeMove(move);
+    }
+
+    // A log belongs to the snapshot it was started after; any other log is stale
+    private static boolean isCurrentLog(byte[] bytes, int generation) throws IOException {
+        if (bytes.length < LOG_HEADER_SIZE) return false;
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        return in.readInt() == LOG_MAGIC && in.readInt() == generation;
+    }
+
+    // Length of the log up to the first torn or corrupt record
+    private static int validLogLength(byte[] bytes) {
+        int offset = LOG_HEADER_SIZE;
+        while (offset + RECORD_SIZE <= bytes.length) {
+            int move = (bytes[offset + 1] & 0xFF) << 8 | (bytes[offset + 2] & 0xFF);
+            if (bytes[offset + 3] != recordCheck(bytes[offset], move)) break;
+            offset += RECORD_SIZE;
+        }
+        return offset;
+    }
+
+    private static byte recordCheck(byte type, int move) {
+        return (byte) (type * 31 ^ move ^ move >> 8 ^ 0x5A);
+    }
+
+    // Append-only log of one game. Every record is written straight to the file, so it survives a
+    // process restart as soon as the call returns; snapshot() also forces the new snapshot to disk.
+    public class Journal implements Closeable {
+        private final String gameId;
+        private int generation;
+        private FileOutputStream log;
+        private int recordsSinceSnapshot;
+
+        // Continue the current log after cutting off a torn tail, or start a fresh one if it is missing or stale
+        Journal(String gameId) throws IOException {
+            this.gameId = gameId;
+            this.generation = snapshotGeneration(gameId);
+            Path file = logFile(gameId);
+            byte[] bytes = Files.exists(file) ? Files.readAllBytes(file) : new byte[0];
+            if (isCurrentLog(bytes, generation)) {
+                int length = validLogLength(bytes);
+                log = new FileOutputStream(file.toFile(), true);
+                log.getChannel().truncate(length);
+                recordsSinceSnapshot = (length - LOG_HEADER_SIZE) / RECORD_SIZE;
+            } else {
+                startLog();
+            }
+        }
+
+        private void startLog() throws IOException {
+            log = new FileOutputStream(logFile(gameId).toFile(), false);
+            DataOutputStream header = new DataOutputStream(log);
+            header.writeInt(LOG_MAGIC);
+            header.writeInt(generation);
+            recordsSinceSnapshot = 0;
+        }
+
+        // Log a move before it is applied to the in-memory game
+        public void logMove(int move) throws IOException {
+            append(RECORD_MOVE, move);
+        }
+
+        public void logUndo() throws IOException {
+            append(RECORD_UNDO, 0);
+        }
+
+        public void logRedo() throws IOException {
+            append(RECORD_REDO, 0);
+        }
+
+        public int recordsSinceSnapshot() {
+            return recordsSinceSnapshot;
+        }
+
+        private synchronized void append(byte type, int move) throws IOException {
+            log.write(new byte[] {type, (byte) (move >> 8), (byte) move, recordCheck(type, move)});
+            recordsSinceSnapshot++;
+        }
+
+        // Write a new snapshot atomically, then start an empty log
+        public synchronized void snapshot(Board board, List<Integer> undoMoves, List<Integer> redoMoves) throws IOException {
+            Path target = snapshotFile(gameId);
+            Path temp = directory.resolve(gameId + ".snap.tmp");
+            try (FileOutputStream out = new FileOutputStream(temp.toFile())) {
+                out.write(encodeSnapshot(generation + 1, board, undoMoves, redoMoves));
+                out.getFD().sync();
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            generation++;
+            log.close();
+            startLog();
+        }
+
+        public synchronized void close() throws IOException {
+            log.close();
+        }
+    }
+}
@@ -0,0 +1,317 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Mate-in-N solver for tactics puzzles: a depth-limited AND/OR search over the Board move generator.
+// At attacker nodes checking moves are searched first and, on the last move, exclusively; at defender
+// nodes every legal reply must be refuted, starting with the reply that refuted a sibling. Proven and
+// disproven positions are kept in a table, so transpositions and deeper iterations reuse earlier work.
+// The fifty-move rule and repetitions are ignored, as is usual for composed and puzzle mates.
+public class MateSolver {
+    public static final int MAX_MATE = 32;
+    private static final int TABLE_BITS = 20;
+    private static final int UNPROVEN = 0xFF;
+
+    private final Board board = new Board();
+    private final long nodeLimit;
+    private long activeNodeLimit; // nodeLimit while proving, lifted while the line of a proven mate is built
+    private final int[][] moveBuffers = new int[2 * MAX_MATE + 2][Board.MAX_MOVES];
+    private final int[] killers = new int[2 * MAX_MATE + 2];
+    // Per position: the smallest depth proven to mate (bits 8-15) and the largest proven not to (bits 0-7)
+    private final long[] tableKeys = new long[1 << TABLE_BITS];
+    private final int[] tableBounds = new int[1 << TABLE_BITS];
+    private long nodes;
+    private boolean aborted;
+
+    // A position with the number of moves in which the side to move is claimed to mate
+    public static class Puzzle {
+        public final String fen;
+        public final int mateIn;
+
+        public Puzzle(String fen, int mateIn) {
+            if (mateIn < 1 || mateIn > MAX_MATE) throw new IllegalArgumentException("Mate depth out of range: " + mateIn);
+            this.fen = new Board(fen).toFen();
+            this.mateIn = mateIn;
+        }
+
+        // Parse "<fen> <n>", or an EPD line whose operations include "dm <n>;" (e.g. "<epd> bm Qxf7#; dm 1;")
+        public static Puzzle parse(String line) {
+            String[] fields = line.trim().split("\\s+");
+            if (!line.contains(";")) {
+                // Exactly an EPD position (4 fields) or a full FEN (6 fields), then the depth, so a FEN whose
+                // depth is missing is not misread as a shorter FEN and its fullmove number
+                if (fields.length != 5 && fields.length != 7) {
+                    throw new IllegalArgumentException("Expected a 4- or 6-field FEN followed by a mate depth");
+                }
+                String fen = String.join(" ", Arrays.copyOf(fields, fields.length - 1));
+                return new Puzzle(fen, Integer.parseInt(fields[fields.length - 1]));
+            }
+            // The four EPD position fields, plus the halfmove and fullmove counters if the line carries a full FEN
+            int positionFields = Math.min(4, fields.length);
+            while (positionFields < Math.min(6, fields.length) && fields[positionFields].matches("\\d+")) {
+                positionFields++;
+            }
+            if (positionFields == 5) throw new IllegalArgumentException("Halfmove counter without a fullmove number");
+            String fen = String.join(" ", Arrays.copyOf(fields, positionFields));
+            String operations = String.join(" ", Arrays.copyOfRange(fields, positionFields, fields.length));
+            for (String operation : operations.split(";")) {
+                String[] parts = operation.trim().split("\\s+", 2);
+                if (parts[0].equals("dm") && parts.length == 2) {
+                    return new Puzzle(fen, Integer.parseInt(parts[1].trim()));
+                }
+            }
+            throw new IllegalArgumentException("No dm operation");
+        }
+    }
+
+    public static class Solution {
+        public final Puzzle puzzle;
+        public final int mateIn; // Shortest forced mate found, 0 if there is none within the limit
+        public final boolean complete; // False if the node limit stopped the search
+        public final List<Integer> line; // Key move, then the longest defence and the mating replies
+        public final long nodes;
+        public final long elapsedMillis;
+
+        Solution(Puzzle puzzle, int mateIn, boolean complete, List<Integer> line, long nodes, long elapsedMillis) {
+            this.puzzle = puzzle;
+            this.mateIn = mateIn;
+            this.complete = complete;
+            this.line = line;
+            this.nodes = nodes;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        // The puzzle is sound if the claimed mate exists and there is no shorter one
+        public boolean matchesClaim() {
+            return mateIn == puzzle.mateIn;
+        }
+
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            if (mateIn > 0) {
+                sb.append("mate in ").append(mateIn).append(':');
+                for (int move : line) sb.append(' ').append(Board.moveToString(move));
+            } else {
+                sb.append(complete ? "no mate in " + puzzle.mateIn : "unresolved, node limit reached");
+            }
+            return sb.append(String.format(" (%d nodes, %d ms)", nodes, elapsedMillis)).toString();
+        }
+    }
+
+    // nodeLimit <= 0 means no limit
+    public MateSolver(long nodeLimit) {
+        this.nodeLimit = nodeLimit;
+        Arrays.fill(tableBounds, UNPROVEN << 8);
+    }
+
+    // Find the shortest forced mate of at most puzzle.mateIn moves, deepening one move at a time
+    public Solution solve(Puzzle puzzle) {
+        long start = System.nanoTime();
+        board.setFen(puzzle.fen);
+        nodes = 0;
+        aborted = false;
+        activeNodeLimit = nodeLimit;
+        Arrays.fill(killers, 0);
+        int mateIn = 0;
+        int keyMove = 0;
+        for (int depth = 1; depth <= puzzle.mateIn && !aborted; depth++) {
+            keyMove = findMate(depth, 0);
+            if (keyMove != 0) {
+                mateIn = depth;
+                break;
+            }
+        }
+        boolean complete = !aborted;
+        // The mate is already proven, so its line is built without the node limit and never cut short
+        activeNodeLimit = 0;
+        List<Integer> line = mateIn > 0 ? mainLine(keyMove, mateIn) : new ArrayList<>();
+        return new Solution(puzzle, mateIn, complete, line, nodes, (System.nanoTime() - start) / 1000000);
+    }
+
+    // Solve a batch in parallel; each pool thread keeps one solver, so its table carries over between puzzles
+    public static List<Solution> solveAll(List<Puzzle> puzzles, int threads, long nodeLimit)
+            throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        ThreadLocal<MateSolver> solvers = ThreadLocal.withInitial(() -> new MateSolver(nodeLimit));
+        try {
+            List<Future<Solution>> futures = new ArrayList<>();
+            for (Puzzle puzzle : puzzles) {
+                futures.add(pool.submit(() -> solvers.get().solve(puzzle)));
+            }
+            List<Solution> solutions = new ArrayList<>(puzzles.size());
+            for (Future<Solution> future : futures) {
+                try {
+                    solutions.add(future.get());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Puzzle failed", e.getCause());
+                }
+            }
+            return solutions;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // Attacker to move: true if it mates in at most depth moves
+    private boolean attack(int depth, int ply) {
+        long key = board.getKey();
+        int slot = (int) key & (tableKeys.length - 1);
+        int bounds = tableKeys[slot] == key ? tableBounds[slot] : UNPROVEN << 8;
+        if (depth >= bounds >> 8) return true;
+        if (depth <= (bounds & 0xFF)) return false;
+
+        boolean mate = findMate(depth, ply) != 0;
+        if (!aborted) {
+            bounds = mate ? (Math.min(bounds >> 8, depth) << 8) | (bounds & 0xFF)
+                : (bounds & 0xFF00) | Math.max(bounds & 0xFF, depth);
+            tableKeys[slot] = key;
+            tableBounds[slot] = bounds;
+        }
+        return mate;
+    }
+
+    // The attacker move that mates in at most depth moves, or 0. Checks go first since they leave the
+    // defender the fewest replies; the remaining moves are only tried with more than one move to go.
+    private int findMate(int depth, int ply) {
+        if (++nodes > activeNodeLimit && activeNodeLimit > 0) {
+            aborted = true;
+            return 0;
+        }
+        int[] moves = moveBuffers[ply];
+        int count = board.generateMoves(moves, false);
+        int quiet = 0;
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            if (!board.makeLegalMove(move)) continue;
+            if (board.isInCheck()) {
+                boolean mate = defend(depth, ply + 1);
+                board.unmakeMove();
+                if (mate) return move;
+                if (aborted) return 0;
+            } else {
+                board.unmakeMove();
+                if (depth > 1) moves[quiet++] = move;
+            }
+        }
+        // Captures and promotions before the remaining quiet moves
+        int front = 0;
+        for (int i = 0; i < quiet; i++) {
+            int move = moves[i];
+            if (board.pieceAt(Board.to(move)) != Board.EMPTY || Board.promotion(move) != 0) {
+                moves[i] = moves[front];
+                moves[front++] = move;
+            }
+        }
+        for (int i = 0; i < quiet; i++) {
+            board.makeMove(moves[i]);
+            boolean mate = defend(depth, ply + 1);
+            board.unmakeMove();
+            if (mate) return moves[i];
+            if (aborted) return 0;
+        }
+        return 0;
+    }
+
+    // Defender to move after the attacker's move: true if every reply still loses within depth - 1 moves
+    private boolean defend(int depth, int ply) {
+        int[] moves = moveBuffers[ply];
+        int count = board.generateMoves(moves, false);
+        for (int i = 1; i < count; i++) {
+            if (moves[i] == killers[ply]) {
+                moves[i] = moves[0];
+                moves[0] = killers[ply];
+                break;
+            }
+        }
+        boolean hasMove = false;
+        for (int i = 0; i < count; i++) {
+            if (!board.makeLegalMove(moves[i])) continue;
+            hasMove = true;
+            boolean mated = depth > 1 && attack(depth - 1, ply + 1);
+            board.unmakeMove();
+            if (!mated) {
+                killers[ply] = moves[i];
+                return false;
+            }
+        }
+        // No legal reply: checkmate, or stalemate, which refutes the attacker's move
+        return hasMove || board.isInCheck();
+    }
+
+    // Key move followed by the defence that holds out longest and the attacker's fastest answers
+    private List<Integer> mainLine(int keyMove, int depth) {
+        List<Integer> line = new ArrayList<>();
+        int move = keyMove;
+        for (; depth > 0 && move != 0; depth--) {
+            line.add(move);
+            board.makeMove(move);
+            int defence = 0;
+            int longest = 0;
+            for (int reply : board.legalMoves()) {
+                board.makeMove(reply);
+                int mateIn = 1;
+                while (mateIn < depth - 1 && !attack(mateIn, 0)) mateIn++;
+                board.unmakeMove();
+                if (mateIn > longest) {
+                    longest = mateIn;
+                    defence = reply;
+                }
+            }
+            if (defence == 0) break;
+            line.add(defence);
+            board.makeMove(defence);
+            move = findMate(longest, 0);
+            depth = longest + 1;
+        }
+        while (board.historySize() > 0) board.unmakeMove();
+        return line;
+    }
+
+    // Usage: java MateSolver --fen "<fen>" --mate 3 [--nodes N]
+    //        java MateSolver --file puzzles.epd [--threads N] [--nodes N]   (one "<fen> <n>" or "<epd> dm <n>;" per line)
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+            opts.put(args[i].substring(2), args[i + 1]);
+        }
+        long nodeLimit = Long.parseLong(opts.getOrDefault("nodes", "0"));
+        List<Puzzle> puzzles = new ArrayList<>();
+        if (opts.containsKey("file")) {
+            // A malformed submission is reported and skipped rather than failing the whole batch
+            List<String> lines = Files.readAllLines(Paths.get(opts.get("file")));
+            for (int i = 0; i < lines.size(); i++) {
+                String line = lines.get(i);
+                if (line.trim().isEmpty() || line.startsWith("#")) continue;
+                try {
+                    puzzles.add(Puzzle.parse(line));
+                } catch (RuntimeException e) {
+                    System.out.println("Line " + (i + 1) + " skipped: " + e.getMessage());
+                }
+            }
+            if (puzzles.isEmpty()) throw new IllegalArgumentException("No valid puzzles in " + opts.get("file"));
+        } else if (opts.containsKey("fen")) {
+            puzzles.add(new Puzzle(opts.get("fen"), Integer.parseInt(opts.getOrDefault("mate", "1"))));
+        } else {
+            throw new IllegalArgumentException("Give --fen and --mate, or --file");
+        }
+        int threads = Integer.parseInt(opts.getOrDefault("threads",
+            String.valueOf(Runtime.getRuntime().availableProcessors())));
+
+        long start = System.nanoTime();
+        List<Solution> solutions = solveAll(puzzles, Math.max(1, Math.min(threads, puzzles.size())), nodeLimit);
+        long elapsed = Math.max(1, (System.nanoTime() - start) / 1000000);
+        int sound = 0;
+        long nodes = 0;
+        for (int i = 0; i < solutions.size(); i++) {
+            Solution solution = solutions.get(i);
+            if (solution.matchesClaim()) sound++;
+            nodes += solution.nodes;
+            System.out.println((i + 1) + ". " + solution.puzzle.fen + " (claimed mate in " + solution.puzzle.mateIn + "): "
+                + solution);
+        }
+        System.out.printf("%d/%d puzzles match their claimed mate, %d nodes in %d ms (%d nodes/s)%n",
+            sound, solutions.size(), nodes, elapsed, nodes * 1000 / elapsed);
+    }
+}
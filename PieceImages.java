@@ -0,0 +1,27 @@
+import java.awt.*;
+import java.util.*;
+
+// Piece images shared by the front ends; images are wp.png, wr.png, etc. in the working directory
+public class PieceImages {
+    private static final String PIECES = "PRNBQK";
+
+    private final Map<String, Image> pieceImages = new HashMap<>();
+
+    public PieceImages() {
+        for (char piece : PIECES.toCharArray()) {
+            String name = String.valueOf(piece).toLowerCase();
+            pieceImages.put("w" + piece, Toolkit.getDefaultToolkit().getImage("w" + name + ".png"));
+            pieceImages.put("b" + piece, Toolkit.getDefaultToolkit().getImage("b" + name + ".png"));
+        }
+    }
+
+    // Image for a board piece letter, or null for an empty square
+    public Image get(char piece) {
+        return piece == Board.EMPTY ? null : pieceImages.get(getPieceKey(piece));
+    }
+
+    // Utility method to map the piece letter to a key, e.g. 'P' to "wP" and 'q' to "bQ"
+    static String getPieceKey(char piece) {
+        return (Board.isWhite(piece) ? "w" : "b") + Character.toUpperCase(piece);
+    }
+}
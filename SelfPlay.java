@@ -0,0 +1,297 @@
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Headless engine-vs-engine match runner with an SPRT stopping rule
+public class SelfPlay {
+    // Short, balanced openings used when no opening file is given
+    private static final String[] DEFAULT_OPENINGS = {
+        "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+        "rnbqkbnr/pppp1ppp/8/4p3/4P3/8/PPPP1PPP/RNBQKBNR w KQkq - 0 2",
+        "rnbqkbnr/pp1ppppp/8/2p5/4P3/8/PPPP1PPP/RNBQKBNR w KQkq - 0 2",
+        "rnbqkbnr/pppp1ppp/4p3/8/4P3/8/PPPP1PPP/RNBQKBNR w KQkq - 0 2",
+        "rnbqkbnr/pp1ppppp/2p5/8/4P3/8/PPPP1PPP/RNBQKBNR w KQkq - 0 2",
+        "rnbqkbnr/ppp1pppp/8/3p4/3P4/8/PPP1PPPP/RNBQKBNR w KQkq - 0 2",
+        "rnbqkb1r/pppppppp/5n2/8/3P4/8/PPP1PPPP/RNBQKBNR w KQkq - 1 2",
+        "rnbqkbnr/ppp1pppp/8/3p4/2PP4/8/PP2PPPP/RNBQKBNR b KQkq - 0 2",
+        "rnbqkbnr/pppppppp/8/8/2P5/8/PP1PPPPP/RNBQKBNR b KQkq - 0 1",
+        "rnbqkbnr/pppppppp/8/8/8/5N2/PPPPPPPP/RNBQKB1R b KQkq - 1 1",
+        "r1bqkbnr/pppp1ppp/2n5/4p3/4P3/5N2/PPPP1PPP/RNBQKB1R w KQkq - 2 3",
+        "rnbqkb1r/pppp1ppp/5n2/4p3/4P3/2N5/PPPP1PPP/R1BQKBNR w KQkq - 2 3",
+        "rnbqkbnr/pp2pppp/3p4/2p5/4P3/5N2/PPPP1PPP/RNBQKB1R w KQkq - 0 3",
+        "rnbqkb1r/pppppp1p/5np1/8/2PP4/8/PP2PPPP/RNBQKBNR w KQkq - 0 3",
+        "rnbqkbnr/ppp2ppp/4p3/3p4/3PP3/8/PPP2PPP/RNBQKBNR w KQkq - 0 3",
+        "rnbqkbnr/pp2pppp/2p5/3p4/3PP3/8/PPP2PPP/RNBQKBNR w KQkq - 0 3"
+    };
+    private static final int RESIGN_SCORE = 1000;
+    private static final int RESIGN_PLIES = 6;
+    // The variance estimate behind the LLR is meaningless on a handful of pairs
+    private static final int MIN_SPRT_PAIRS = 10;
+
+    // A named set of engine options, parsed from "name:Option=value,Option=value"
+    static class EngineConfig {
+        final String name;
+        final Map<String, String> options = new LinkedHashMap<>();
+
+        EngineConfig(String spec) {
+            int colon = spec.indexOf(':');
+            name = colon < 0 ? spec : spec.substring(0, colon);
+            if (colon >= 0 && colon + 1 < spec.length()) {
+                for (String option : spec.substring(colon + 1).split(",")) {
+                    String[] kv = option.split("=", 2);
+                    if (kv.length != 2) throw new IllegalArgumentException("Bad engine option: " + option);
+                    options.put(kv[0].trim(), kv[1].trim());
+                }
+            }
+        }
+
+        Engine create() {
+            Engine engine = new Engine(1, 32);
+            for (Map.Entry<String, String> option : options.entrySet()) {
+                engine.setOption(option.getKey(), option.getValue());
+            }
+            return engine;
+        }
+
+        public String toString() {
+            return name + options;
+        }
+    }
+
+    // Running totals; pair scores are from the first engine's point of view
+    static class MatchStats {
+        long wins, draws, losses;
+        final long[] pentanomial = new long[5]; // Pairs scoring 0, 0.5, 1, 1.5, 2 points
+
+        void addPair(double firstGame, double secondGame) {
+            for (double score : new double[] {firstGame, secondGame}) {
+                if (score == 1.0) wins++;
+                else if (score == 0.0) losses++;
+                else draws++;
+            }
+            pentanomial[(int) Math.round((firstGame + secondGame) * 2)]++;
+        }
+
+        long pairs() {
+            long n = 0;
+            for (long count : pentanomial) n += count;
+            return n;
+        }
+
+        // Mean and variance of the per-pair average score
+        double[] meanAndVariance() {
+            long n = pairs();
+            double mean = 0, squares = 0;
+            for (int i = 0; i < 5; i++) {
+                double score = i / 4.0;
+                mean += score * pentanomial[i];
+                squares += score * score * pentanomial[i];
+            }
+            mean /= n;
+            return new double[] {mean, squares / n - mean * mean};
+        }
+
+        // Generalised SPRT log-likelihood ratio for H1: elo1 against H0: elo0 (logistic Elo)
+        double llr(double elo0, double elo1) {
+            long n = pairs();
+            if (n < MIN_SPRT_PAIRS) return 0;
+            double[] mv = meanAndVariance();
+            if (mv[1] <= 0) return 0;
+            double s0 = expectedScore(elo0);
+            double s1 = expectedScore(elo1);
+            return n * (s1 - s0) * (2 * mv[0] - s0 - s1) / (2 * mv[1]);
+        }
+
+        // Elo difference and 95% confidence bounds
+        double[] elo() {
+            double[] mv = meanAndVariance();
+            double margin = 1.96 * Math.sqrt(mv[1] / pairs());
+            return new double[] {toElo(mv[0]), toElo(mv[0] - margin), toElo(mv[0] + margin)};
+        }
+    }
+
+    static double expectedScore(double elo) {
+        return 1.0 / (1.0 + Math.pow(10, -elo / 400.0));
+    }
+
+    static double toElo(double score) {
+        score = Math.min(Math.max(score, 1e-6), 1 - 1e-6);
+        return -400.0 * Math.log10(1.0 / score - 1.0);
+    }
+
+    private final EngineConfig first;
+    private final EngineConfig second;
+    private final List<String> openings;
+    private final long moveTimeMillis;
+    private final String timeControl;
+    private final int maxPlies;
+    private volatile boolean stopped;
+    // One engine per config on each worker thread, reused across games so its caches are allocated once.
+    // The caches are cleared before every game: under a clock, warm caches would let an engine search
+    // deeper, making each result depend on the games played before it on the same thread.
+    private final ThreadLocal<Map<EngineConfig, Engine>> engines = ThreadLocal.withInitial(HashMap::new);
+
+    // With a timeControl such as "10+0.1" each side plays on a clock; otherwise every move gets moveTimeMillis
+    SelfPlay(EngineConfig first, EngineConfig second, List<String> openings, long moveTimeMillis, String timeControl,
+            int maxPlies) {
+        this.first = first;
+        this.second = second;
+        this.openings = openings;
+        this.moveTimeMillis = moveTimeMillis;
+        this.timeControl = timeControl;
+        this.maxPlies = maxPlies;
+    }
+
+    // Play one game and return White's score (1, 0.5 or 0); null if the match was stopped
+    Double playGame(String openingFen, EngineConfig whiteConfig, EngineConfig blackConfig) {
+        Engine white = engines.get().computeIfAbsent(whiteConfig, EngineConfig::create);
+        Engine black = engines.get().computeIfAbsent(blackConfig, EngineConfig::create);
+        white.clearCaches();
+        black.clearCaches();
+        Board board = new Board(openingFen);
+        ChessClock clock = timeControl == null ? null : ChessClock.fromTimeControl(timeControl);
+        if (clock != null) clock.start(board.isWhiteToMove());
+        int resignCount = 0;
+        int resignSign = 0; // Side favoured by the current run of decisive scores, +1 White, -1 Black
+
+        for (int ply = 0; ply < maxPlies; ply++) {
+            if (stopped) return null;
+            Board.Status status = board.status();
+            if (status.isDraw()) return 0.5;
+            if (status == Board.Status.CHECKMATE) return board.isWhiteToMove() ? 0.0 : 1.0;
+            boolean whiteMoving = board.isWhiteToMove();
+            Engine engine = whiteMoving ? white : black;
+            Engine.Analysis analysis;
+            if (clock == null) {
+                analysis = engine.think(board, moveTimeMillis);
+            } else {
+                analysis = engine.think(board,
+                    new TimeManager(clock.remainingMillis(whiteMoving), clock.getIncrementMillis(),
+                        clock.getDelayMillis(), 0));
+                clock.press();
+                if (clock.isFlagged(whiteMoving)) return whiteMoving ? 0.0 : 1.0;
+            }
+            Engine.Line best = analysis.lines.get(0);
+
+            // Adjudicate once both sides have agreed on a decisive score for the same side for a while
+            if (Math.abs(best.score) >= RESIGN_SCORE) {
+                int sign = Integer.signum(best.score);
+                resignCount = sign == resignSign ? resignCount + 1 : 1;
+                resignSign = sign;
+                if (resignCount >= RESIGN_PLIES) return sign > 0 ? 1.0 : 0.0;
+            } else {
+                resignCount = 0;
+            }
+            board.makeMove(best.move);
+        }
+        return 0.5;
+    }
+
+    // Play game pairs with colours reversed until the SPRT decides or maxPairs is reached
+    MatchStats run(int maxPairs, int concurrency, double elo0, double elo1, double alpha, double beta)
+            throws InterruptedException {
+        double lower = Math.log(beta / (1 - alpha));
+        double upper = Math.log((1 - beta) / alpha);
+        MatchStats stats = new MatchStats();
+        ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+        CompletionService<double[]> completed = new ExecutorCompletionService<>(pool);
+
+        int submitted = 0;
+        for (; submitted < Math.min(maxPairs, concurrency * 2); submitted++) {
+            submitPair(completed, submitted);
+        }
+        String verdict = "inconclusive";
+        try {
+            for (int done = 0; done < submitted; done++) {
+                double[] pair;
+                try {
+                    pair = completed.take().get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Game failed", e.getCause());
+                }
+                if (pair == null) continue;
+                stats.addPair(pair[0], pair[1]);
+                double llr = stats.llr(elo0, elo1);
+                printProgress(stats, llr, lower, upper);
+                if (llr >= upper) {
+                    verdict = "H1 accepted";
+                    break;
+                }
+                if (llr <= lower) {
+                    verdict = "H0 accepted";
+                    break;
+                }
+                if (submitted < maxPairs) {
+                    submitPair(completed, submitted++);
+                }
+            }
+        } finally {
+            stopped = true;
+            pool.shutdownNow();
+            pool.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        System.out.println("SPRT [" + elo0 + ", " + elo1 + "]: " + verdict);
+        return stats;
+    }
+
+    private void submitPair(CompletionService<double[]> completed, int index) {
+        String opening = openings.get(index % openings.size());
+        completed.submit(() -> {
+            Double firstGame = playGame(opening, first, second);
+            Double secondGame = firstGame == null ? null : playGame(opening, second, first);
+            if (secondGame == null) return null;
+            return new double[] {firstGame, 1.0 - secondGame};
+        });
+    }
+
+    private void printProgress(MatchStats stats, double llr, double lower, double upper) {
+        double[] elo = stats.elo();
+        System.out.printf("Games %d  W %d  D %d  L %d  Elo %+.1f [%+.1f, %+.1f]  LLR %.2f (%.2f, %.2f)%n",
+            stats.pairs() * 2, stats.wins, stats.draws, stats.losses, elo[0], elo[1], elo[2], llr, lower, upper);
+    }
+
+    // Opening FENs, validated up front so a bad line fails before any game starts
+    static List<String> loadOpenings(String path) throws IOException {
+        List<String> openings = new ArrayList<>();
+        if (path == null) {
+            openings.addAll(Arrays.asList(DEFAULT_OPENINGS));
+        } else {
+            for (String line : Files.readAllLines(Paths.get(path))) {
+                if (!line.trim().isEmpty() && !line.startsWith("#")) openings.add(new Board(line).toFen());
+            }
+        }
+        if (openings.isEmpty()) throw new IllegalArgumentException("No opening positions");
+        Collections.shuffle(openings, new Random(1));
+        return openings;
+    }
+
+    // Usage: java SelfPlay --engine1 new:Depth=5 --engine2 base:Depth=4 [--games 2000] [--concurrency N]
+    //        [--movetime 50 | --tc 10+0.1] [--maxplies 300] [--openings file.fen] [--elo0 0] [--elo1 5] [--alpha 0.05] [--beta 0.05]
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+            opts.put(args[i].substring(2), args[i + 1]);
+        }
+        EngineConfig first = new EngineConfig(opts.getOrDefault("engine1", "engine1"));
+        EngineConfig second = new EngineConfig(opts.getOrDefault("engine2", "engine2"));
+        int games = Integer.parseInt(opts.getOrDefault("games", "2000"));
+        int concurrency = Integer.parseInt(opts.getOrDefault("concurrency",
+            String.valueOf(Runtime.getRuntime().availableProcessors())));
+
+        SelfPlay match = new SelfPlay(first, second, loadOpenings(opts.get("openings")),
+            Long.parseLong(opts.getOrDefault("movetime", "50")), opts.get("tc"),
+            Integer.parseInt(opts.getOrDefault("maxplies", "300")));
+        System.out.println(first + " vs " + second + ", up to " + games + " games on " + concurrency + " threads, "
+            + (opts.containsKey("tc") ? "tc " + opts.get("tc") : opts.getOrDefault("movetime", "50") + " ms/move"));
+        MatchStats stats = match.run((games + 1) / 2, concurrency,
+            Double.parseDouble(opts.getOrDefault("elo0", "0")), Double.parseDouble(opts.getOrDefault("elo1", "5")),
+            Double.parseDouble(opts.getOrDefault("alpha", "0.05")), Double.parseDouble(opts.getOrDefault("beta", "0.05")));
+        if (stats.pairs() > 0) {
+            double[] elo = stats.elo();
+            System.out.printf("Elo difference: %+.1f +/- %.1f (95%%) over %d games%n",
+                elo[0], (elo[2] - elo[1]) / 2, stats.pairs() * 2);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+// Per-move time budget for the engine, derived from the clock and adapted while iterative deepening runs
+public class TimeManager {
+    private static final int DEFAULT_MOVES_TO_GO = 30;
+    private static final long MOVE_OVERHEAD_MILLIS = 30;
+    private static final int STABLE_ITERATIONS = 4;
+    private static final int FAIL_LOW_MARGIN = 30;
+    private static final double MAX_SCALE = 3.0;
+
+    private final long optimumMillis;
+    private final long maximumMillis;
+    private final long startNanos = System.nanoTime();
+    private int iterations;
+    private long lastIterationEndMillis;
+    private long lastIterationMillis;
+    private int lastBestMove;
+    private int lastScore;
+    private int stableIterations;
+    private double scale = 1.0;
+
+    // movesToGo <= 0 means sudden death with increment. The delay is free time on every move, so it is
+    // added to both budgets in full.
+    public TimeManager(long remainingMillis, long incrementMillis, long delayMillis, int movesToGo) {
+        int horizon = movesToGo > 0 ? Math.min(movesToGo, DEFAULT_MOVES_TO_GO) : DEFAULT_MOVES_TO_GO;
+        long usable = Math.max(1, remainingMillis - MOVE_OVERHEAD_MILLIS);
+        long optimum = usable / horizon + incrementMillis * 3 / 4 + delayMillis;
+        maximumMillis = Math.max(1, Math.min(usable * 4 / 5 + delayMillis, optimum * 5));
+        optimumMillis = Math.max(1, Math.min(optimum, maximumMillis));
+    }
+
+    public long optimumMillis() {
+        return optimumMillis;
+    }
+
+    // Hard limit: the search is aborted mid-iteration once this is exceeded
+    public long maximumMillis() {
+        return maximumMillis;
+    }
+
+    public long elapsedMillis() {
+        return (System.nanoTime() - startNanos) / 1000000;
+    }
+
+    // Called after each completed iteration; returns true if another iteration should not be started
+    public boolean onIteration(int bestMove, int score, int legalMoves) {
+        if (legalMoves == 1) {
+            return true;
+        }
+        if (iterations > 0) {
+            if (bestMove != lastBestMove) {
+                // Unstable best move: allow more time to resolve it
+                stableIterations = 0;
+                scale = Math.min(MAX_SCALE, Math.max(scale, 1.0) * 1.4);
+            } else {
+                stableIterations++;
+            }
+            if (score < lastScore - FAIL_LOW_MARGIN) {
+                // The score dropped (fail low): look for a better move
+                scale = Math.min(MAX_SCALE, Math.max(scale, 1.0) * 1.3);
+            } else if (stableIterations >= STABLE_ITERATIONS) {
+                // Easy move: the same best move for several iterations
+                scale = Math.min(scale, 0.5);
+            }
+        }
+        iterations++;
+        lastBestMove = bestMove;
+        lastScore = score;
+
+        // Predict the next iteration from how fast the last ones grew, and skip it if it would overshoot
+        long elapsed = elapsedMillis();
+        long iterationMillis = elapsed - lastIterationEndMillis;
+        double growth = lastIterationMillis > 0
+            ? Math.min(8.0, Math.max(2.0, (double) iterationMillis / lastIterationMillis)) : 4.0;
+        lastIterationEndMillis = elapsed;
+        lastIterationMillis = Math.max(1, iterationMillis);
+        double target = optimumMillis * scale;
+        return elapsed >= target || elapsed + iterationMillis * growth > Math.min(2 * target, maximumMillis);
+    }
+}
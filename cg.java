@@ -6,82 +6,153 @@ import javax.swing.*;
 public class cg extends Frame implements MouseListener {
     private static final int TILE_SIZE = 80;
     private static final int BOARD_SIZE = TILE_SIZE * 8;
-    private static final String[] INITIAL_PIECES = {
-        "r", "n", "b", "q", "k", "b", "n", "r",
-        "p", "p", "p", "p", "p", "p", "p", "p",
-        ".", ".", ".", ".", ".", ".", ".", ".",
-        ".", ".", ".", ".", ".", ".", ".", ".",
-        ".", ".", ".", ".", ".", ".", ".", ".",
-        ".", ".", ".", ".", ".", ".", ".", ".",
-        "P", "P", "P", "P", "P", "P", "P", "P",
-        "R", "N", "B", "Q", "K", "B", "N", "R"
+    private static final int EVAL_BAR_WIDTH = 24;
+    private static final int PANEL_WIDTH = 220;
+    private static final int HINT_LINES = 3;
+    private static final int ANALYSIS_DEPTH = 8;
+    private static final int ANALYSIS_REFRESH_MS = 150;
+    private static final long CLOCK_BASE_MS = 5 * 60 * 1000;
+    private static final long CLOCK_INCREMENT_MS = 3000;
+    private static final long CLOCK_DELAY_MS = 0;
+    private static final Color[] HINT_COLORS = {
+        new Color(30, 120, 255, 170), new Color(30, 200, 120, 140), new Color(240, 170, 30, 120)
     };
 
-    private String[][] board;
-    private String selectedPiece;
+    private Board board;
+    private boolean pieceSelected;
     private int selectedX, selectedY;
-    private boolean isWhiteTurn = true;
-    private Set<String> whitePieces;
-    private Set<String> blackPieces;
-    private Set<String> validMoves;
-    private Map<String, Image> pieceImages;
+    private java.util.List<Integer> validMoves = new ArrayList<>();
+    private PieceImages pieceImages;
     private boolean playWithComputer;
     private boolean isGameOver = false;
+    private String gameResult;
     private Player currentPlayer;
     private Player whitePlayer;
     private Player blackPlayer;
+    private final ChessClock clock = new ChessClock(CLOCK_BASE_MS, CLOCK_INCREMENT_MS, CLOCK_DELAY_MS);
+
+    // Live analysis: the search thread posts into latestAnalysis, the refresh timer repaints on the EDT.
+    // Each post carries the generation of the position it belongs to, and the timer shows only posts for
+    // the current generation, so a late update from a stopped search can never reach the screen.
+    private final Engine engine = new Engine(HINT_LINES, ANALYSIS_DEPTH);
+    private final java.util.concurrent.atomic.AtomicReference<PostedAnalysis> latestAnalysis =
+        new java.util.concurrent.atomic.AtomicReference<>();
+    private int analysisGeneration; // Only read and changed on the EDT
+    private Engine.Analysis displayedAnalysis;
+    private javax.swing.Timer analysisTimer;
+
+    private static class PostedAnalysis {
+        final int generation;
+        final Engine.Analysis analysis;
+
+        PostedAnalysis(int generation, Engine.Analysis analysis) {
+            this.generation = generation;
+            this.analysis = analysis;
+        }
+    }
 
     // Constructor to initialize the game
     public cg(boolean playWithComputer) {
         this.playWithComputer = playWithComputer;
-        board = new String[8][8];
-        whitePieces = new HashSet<>(Arrays.asList("P", "R", "N", "B", "Q", "K"));
-        blackPieces = new HashSet<>(Arrays.asList("p", "r", "n", "b", "q", "k"));
-        initializeBoard();
+        board = new Board();
 
         // Load piece images from the same directory as the source code
-        loadPieceImages();
+        pieceImages = new PieceImages();
 
         // Initialize players (Human vs Human or Human vs Computer)
         whitePlayer = new HumanPlayer(true);
         blackPlayer = playWithComputer ? new ComputerPlayer(false) : new HumanPlayer(false);
         currentPlayer = whitePlayer;
 
-        setSize(BOARD_SIZE, BOARD_SIZE);
+        setSize(BOARD_SIZE + EVAL_BAR_WIDTH + PANEL_WIDTH, BOARD_SIZE);
         setTitle("Chess Game");
         setVisible(true);
         addMouseListener(this);
         addWindowListener(new WindowAdapter() {
             public void windowClosing(WindowEvent we) {
+                engine.stop();
+                clock.stop();
+                analysisTimer.stop();
                 dispose();
             }
         });
-    }
 
-    // Initialize the chessboard
-    private void initializeBoard() {
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                board[i][j] = INITIAL_PIECES[i * 8 + j];
+        // Throttle analysis repaints to the refresh interval, however fast the search reports;
+        // the same tick refreshes the clock display and checks for a flag fall
+        analysisTimer = new javax.swing.Timer(ANALYSIS_REFRESH_MS, e -> {
+            PostedAnalysis posted = latestAnalysis.get();
+            Engine.Analysis analysis = posted != null && posted.generation == analysisGeneration ? posted.analysis : null;
+            if (analysis != displayedAnalysis) {
+                displayedAnalysis = analysis;
+                repaint();
+            } else if (clock.isRunning()) {
+                repaint(BOARD_SIZE + EVAL_BAR_WIDTH, 0, PANEL_WIDTH, BOARD_SIZE);
             }
+            checkFlag();
+        });
+        analysisTimer.start();
+        startAnalysis();
+    }
+
+    // Start the clock on the first move, then hand the turn over after every move
+    private void pressClock() {
+        if (clock.isRunning()) {
+            clock.press();
+        } else {
+            clock.start(board.isWhiteToMove());
+        }
+    }
+
+    // The side to move loses when its time runs out
+    private void checkFlag() {
+        checkFlag(board.isWhiteToMove());
+    }
+
+    private void checkFlag(boolean white) {
+        if (!isGameOver && clock.isFlagged(white)) {
+            endGame((white ? "White" : "Black") + " lost on time");
         }
     }
 
-    // Load piece images
-    private void loadPieceImages() {
-        pieceImages = new HashMap<>();
-        pieceImages.put("wP", Toolkit.getDefaultToolkit().getImage("wp.png"));
-        pieceImages.put("wR", Toolkit.getDefaultToolkit().getImage("wr.png"));
-        pieceImages.put("wN", Toolkit.getDefaultToolkit().getImage("wn.png"));
-        pieceImages.put("wB", Toolkit.getDefaultToolkit().getImage("wb.png"));
-        pieceImages.put("wQ", Toolkit.getDefaultToolkit().getImage("wq.png"));
-        pieceImages.put("wK", Toolkit.getDefaultToolkit().getImage("wk.png"));
-        pieceImages.put("bP", Toolkit.getDefaultToolkit().getImage("bp.png"));
-        pieceImages.put("bR", Toolkit.getDefaultToolkit().getImage("br.png"));
-        pieceImages.put("bN", Toolkit.getDefaultToolkit().getImage("bn.png"));
-        pieceImages.put("bB", Toolkit.getDefaultToolkit().getImage("bb.png"));
-        pieceImages.put("bQ", Toolkit.getDefaultToolkit().getImage("bq.png"));
-        pieceImages.put("bK", Toolkit.getDefaultToolkit().getImage("bk.png"));
+    // End the game after checkmate, stalemate or a draw by rule
+    private void checkGameStatus() {
+        Board.Status status = board.status();
+        if (status == Board.Status.CHECKMATE) {
+            endGame(status.description + " - " + (board.isWhiteToMove() ? "Black" : "White") + " wins");
+        } else if (status != Board.Status.ONGOING) {
+            endGame(status.description);
+        }
+    }
+
+    private void endGame(String result) {
+        clock.stop();
+        isGameOver = true;
+        gameResult = result;
+        pieceSelected = false;
+        startAnalysis();
+        System.out.println(result);
+        repaint();
+    }
+
+    // Analyse the current position in the background while waiting for the next click
+    private void startAnalysis() {
+        int generation = ++analysisGeneration;
+        displayedAnalysis = null; // The old hints belong to the previous position
+        if (isGameOver) {
+            engine.stop();
+            return;
+        }
+        engine.startAnalysis(board, analysis -> {
+            // A late update from an earlier search must not replace one for a newer position
+            PostedAnalysis post = new PostedAnalysis(generation, analysis);
+            latestAnalysis.accumulateAndGet(post, (current, next) ->
+                current != null && current.generation > next.generation ? current : next);
+        });
+    }
+
+    // Paint over the old frame directly; clearing first makes the live analysis flicker
+    public void update(Graphics g) {
+        paint(g);
     }
 
     // Paint the board and pieces
@@ -93,91 +164,140 @@ public class cg extends Frame implements MouseListener {
                 g.fillRect(j * TILE_SIZE, i * TILE_SIZE, TILE_SIZE, TILE_SIZE);
 
                 // Draw the pieces
-                String piece = board[i][j];
-                if (!piece.equals(".")) {
-                    Image pieceImage = pieceImages.get(getPieceKey(piece));
-                    if (pieceImage != null) {
-                        g.drawImage(pieceImage, j * TILE_SIZE, i * TILE_SIZE, TILE_SIZE, TILE_SIZE, this);
-                    }
+                Image pieceImage = pieceImages.get(board.pieceAt(j, i));
+                if (pieceImage != null) {
+                    g.drawImage(pieceImage, j * TILE_SIZE, i * TILE_SIZE, TILE_SIZE, TILE_SIZE, this);
                 }
             }
         }
 
         // Highlight valid moves (if a piece is selected)
-        if (selectedPiece != null) {
+        if (pieceSelected) {
             g.setColor(Color.GREEN);
-            for (String move : validMoves) {
-                int x = Integer.parseInt(move.split(",")[0]);
-                int y = Integer.parseInt(move.split(",")[1]);
+            for (int move : validMoves) {
+                int x = Board.to(move) % 8;
+                int y = Board.to(move) / 8;
                 g.fillRect(x * TILE_SIZE, y * TILE_SIZE, TILE_SIZE, TILE_SIZE);
             }
         }
+
+        paintAnalysis(g, displayedAnalysis);
+        paintClocks(g);
     }
 
-    // Utility method to map the piece letter to a key for loading images
-    private String getPieceKey(String piece) {
-        if (piece.equals("P") || piece.equals("p")) {
-            return (piece.equals("P") ? "wP" : "bP");
+    // Black's clock at the top of the panel, White's at the bottom; the running clock in red
+    private void paintClocks(Graphics g) {
+        int panelX = BOARD_SIZE + EVAL_BAR_WIDTH;
+        boolean whiteRunning = clock.isRunning() && board.isWhiteToMove();
+        boolean blackRunning = clock.isRunning() && !board.isWhiteToMove();
+        g.setColor(blackRunning ? Color.RED : Color.BLACK);
+        g.drawString("Black  " + ChessClock.format(clock.remainingMillis(false)), panelX + 10, 50);
+        g.setColor(whiteRunning ? Color.RED : Color.BLACK);
+        g.drawString("White  " + ChessClock.format(clock.remainingMillis(true)), panelX + 10, BOARD_SIZE - 20);
+        if (gameResult != null) {
+            g.setColor(Color.BLUE);
+            g.drawString(gameResult, panelX + 10, BOARD_SIZE - 50);
         }
-        if (piece.equals("R") || piece.equals("r")) {
-            return (piece.equals("R") ? "wR" : "bR");
-        }
-        if (piece.equals("N") || piece.equals("n")) {
-            return (piece.equals("N") ? "wN" : "bN");
+    }
+
+    // Draw the evaluation bar, the candidate move list and hint arrows on the board
+    private void paintAnalysis(Graphics g, Engine.Analysis analysis) {
+        int barX = BOARD_SIZE;
+        int panelX = BOARD_SIZE + EVAL_BAR_WIDTH;
+        g.setColor(Color.WHITE);
+        g.fillRect(panelX, 0, PANEL_WIDTH, BOARD_SIZE);
+
+        // White's share of the bar follows a logistic curve of the score
+        int score = analysis == null ? 0 : analysis.score();
+        double whiteShare = Engine.isMateScore(score) ? (score > 0 ? 1.0 : 0.0)
+            : 1.0 / (1.0 + Math.exp(-score / 250.0));
+        int whiteHeight = (int) Math.round(BOARD_SIZE * whiteShare);
+        g.setColor(Color.BLACK);
+        g.fillRect(barX, 0, EVAL_BAR_WIDTH, BOARD_SIZE - whiteHeight);
+        g.setColor(Color.WHITE);
+        g.fillRect(barX, BOARD_SIZE - whiteHeight, EVAL_BAR_WIDTH, whiteHeight);
+        g.setColor(Color.GRAY);
+        g.drawLine(barX, BOARD_SIZE / 2, barX + EVAL_BAR_WIDTH, BOARD_SIZE / 2);
+
+        g.setColor(Color.BLACK);
+        int textY = 80;
+        if (analysis == null) {
+            g.drawString(isGameOver ? "Game over" : "Analysing...", panelX + 10, textY);
+            return;
         }
-        if (piece.equals("B") || piece.equals("b")) {
-            return (piece.equals("B") ? "wB" : "bB");
+        if (analysis.lines.isEmpty()) {
+            g.drawString("No legal moves", panelX + 10, textY);
+            return;
         }
-        if (piece.equals("Q") || piece.equals("q")) {
-            return (piece.equals("Q") ? "wQ" : "bQ");
+        g.drawString("Depth " + analysis.depth + "  " + analysis.nodes + " nodes", panelX + 10, textY);
+        for (int i = 0; i < analysis.lines.size(); i++) {
+            Engine.Line line = analysis.lines.get(i);
+            textY += 24;
+            g.setColor(HINT_COLORS[i % HINT_COLORS.length].darker());
+            g.drawString((i + 1) + ". " + line, panelX + 10, textY);
         }
-        if (piece.equals("K") || piece.equals("k")) {
-            return (piece.equals("K") ? "wK" : "bK");
+
+        Graphics2D g2 = (Graphics2D) g;
+        for (int i = analysis.lines.size() - 1; i >= 0; i--) {
+            int move = analysis.lines.get(i).move;
+            g2.setColor(HINT_COLORS[i % HINT_COLORS.length]);
+            g2.setStroke(new BasicStroke(i == 0 ? 8 : 5, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+            int from = Board.from(move);
+            int to = Board.to(move);
+            g2.drawLine(from % 8 * TILE_SIZE + TILE_SIZE / 2, from / 8 * TILE_SIZE + TILE_SIZE / 2,
+                to % 8 * TILE_SIZE + TILE_SIZE / 2, to / 8 * TILE_SIZE + TILE_SIZE / 2);
         }
-        return null; // For empty tiles
+        g2.setStroke(new BasicStroke());
     }
 
     // Mouse click event handler to select and move pieces
     public void mouseClicked(MouseEvent e) {
         int x = e.getX() / TILE_SIZE;
         int y = e.getY() / TILE_SIZE;
+        checkFlag(); // The flag may have fallen since the last timer tick; a late move must not count
+        if (x >= 8 || y >= 8 || isGameOver) {
+            return; // Click on the analysis panel or after the game has ended
+        }
 
-        if (selectedPiece == null) {
+        if (!pieceSelected) {
             // Select a piece
-            if (!board[y][x].equals(".")) {
-                String piece = board[y][x];
-                if (isWhiteTurn && whitePieces.contains(piece) || !isWhiteTurn && blackPieces.contains(piece)) {
-                    selectedPiece = piece;
-                    selectedX = x;
-                    selectedY = y;
-                    validMoves = calculateValidMoves(selectedPiece, selectedX, selectedY);
-                    repaint();
-                }
+            char piece = board.pieceAt(x, y);
+            if (piece != Board.EMPTY && Board.isWhite(piece) == board.isWhiteToMove()) {
+                pieceSelected = true;
+                selectedX = x;
+                selectedY = y;
+                validMoves = board.legalMovesFrom(x, y);
+                repaint();
             }
         } else {
             // Move the piece
-            if (validMoves.contains(x + "," + y)) {
-                String capturedPiece = board[y][x];
-                board[y][x] = selectedPiece;
-                board[selectedY][selectedX] = ".";
-                selectedPiece = null;
-                isWhiteTurn = !isWhiteTurn;
+            int move = board.findMove(selectedX, selectedY, x, y);
+            if (move != 0) {
+                char capturedPiece = board.pieceAt(x, y);
+                boolean whiteMoved = board.isWhiteToMove();
+                board.makeMove(move);
+                pressClock();
+                pieceSelected = false;
                 validMoves.clear();
+                // A flag that fell during this move takes precedence over the position it produced
+                checkFlag(whiteMoved);
+                if (!isGameOver) checkGameStatus();
+                startAnalysis();
                 repaint();
 
                 // Handle capture (capturing the opponent's piece)
-                if (!capturedPiece.equals(".")) {
+                if (capturedPiece != Board.EMPTY) {
                     System.out.println("Captured: " + capturedPiece);
                 }
             } else {
-                selectedPiece = null;
+                pieceSelected = false;
                 validMoves.clear();
                 repaint();
             }
         }
 
         // Handle Computer's Move (if playing against the computer)
-        if (playWithComputer && !isWhiteTurn && !isGameOver) {
+        if (playWithComputer && !board.isWhiteToMove() && !isGameOver) {
             makeComputerMove();
         }
     }
@@ -187,146 +307,10 @@ public class cg extends Frame implements MouseListener {
             // Simulate computer move (this is simplified, you would implement a real AI here)
             System.out.println("Computer is making a move...");
             // In a real implementation, you would select a valid move for the computer here
-            isWhiteTurn = true; // Switch back to human player after the computer move
             repaint();
         }
     }
 
-    private Set<String> calculateValidMoves(String piece, int x, int y) {
-        Set<String> moves = new HashSet<>();
-        if (piece.equals("P") || piece.equals("p")) {
-            int direction = piece.equals("P") ? -1 : 1;  // White moves up, black moves down
-            // Regular move one square forward
-            if (y + direction >= 0 && y + direction < 8 && board[y + direction][x].equals(".")) {
-                moves.add(x + "," + (y + direction));
-            }
-            // Capture diagonally
-            if (x + 1 < 8 && y + direction >= 0 && y + direction < 8 && !board[y + direction][x + 1].equals(".") &&
-                (Character.isLowerCase(board[y + direction][x + 1].charAt(0)) != (piece.equals("P")))) {
-                moves.add((x + 1) + "," + (y + direction));
-            }
-            if (x - 1 >= 0 && y + direction >= 0 && y + direction < 8 && !board[y + direction][x - 1].equals(".") &&
-                (Character.isLowerCase(board[y + direction][x - 1].charAt(0)) != (piece.equals("P")))) {
-                moves.add((x - 1) + "," + (y + direction));
-            }
-            // Special move (two squares forward on first move)
-            if ((piece.equals("P") && y == 6) || (piece.equals("p") && y == 1)) {
-                if (board[y + direction][x].equals(".") && board[y + direction * 2][x].equals(".")) {
-                    moves.add(x + "," + (y + direction * 2));
-                }
-            }
-        }
-        else if (piece.equals("N") || piece.equals("n")) {  // Knight
-            int[] dx = {-2, -1, 1, 2, 2, 1, -1, -2};
-            int[] dy = {1, 2, 2, 1, -1, -2, -2, -1};
-            for (int i = 0; i < 8; i++) {
-                int newX = x + dx[i];
-                int newY = y + dy[i];
-                if (newX >= 0 && newX < 8 && newY >= 0 && newY < 8) {
-                    String target = board[newY][newX];
-                    if (target.equals(".") || (Character.isLowerCase(target.charAt(0)) != Character.isLowerCase(piece.charAt(0)))) {
-                        moves.add(newX + "," + newY);
-                    }
-                }
-            }
-        }
-        else if (piece.equals("R") || piece.equals("r")) {  // Rook
-            moves.addAll(calculateStraightMoves(x, y, piece));
-        }
-        else if (piece.equals("B") || piece.equals("b")) {  // Bishop
-            moves.addAll(calculateDiagonalMoves(x, y, piece));
-        }
-        else if (piece.equals("Q") || piece.equals("q")) {  // Queen
-            moves.addAll(calculateStraightMoves(x, y, piece));
-            moves.addAll(calculateDiagonalMoves(x, y, piece));
-        }
-        else if (piece.equals("K") || piece.equals("k")) {  // King
-            int[] dx = {-1, 0, 1, 1, 1, 0, -1, -1};
-            int[] dy = {-1, -1, -1, 0, 1, 1, 1, 0};
-            for (int i = 0; i < 8; i++) {
-                int newX = x + dx[i];
-                int newY = y + dy[i];
-                if (newX >= 0 && newX < 8 && newY >= 0 && newY < 8) {
-                    String target = board[newY][newX];
-                    if (target.equals(".") || (Character.isLowerCase(target.charAt(0)) != Character.isLowerCase(piece.charAt(0)))) {
-                        moves.add(newX + "," + newY);
-                    }
-                }
-            }
-        }
-        return moves;
-    }
-
-    // Helper methods to calculate valid moves for straight-moving pieces (Rook, Queen)
-    private Set<String> calculateStraightMoves(int x, int y, String piece) {
-        Set<String> moves = new HashSet<>();
-        String[] directions = {"up", "down", "left", "right"};
-        for (String direction : directions) {
-            int i = 1;
-            while (true) {
-                int newX = x, newY = y;
-                if (direction.equals("up")) newY -= i;
-                if (direction.equals("down")) newY += i;
-                if (direction.equals("left")) newX -= i;
-                if (direction.equals("right")) newX += i;
-                if (newX < 0 || newY < 0 || newX >= 8 || newY >= 8) break;
-
-                String target = board[newY][newX];
-                if (target.equals(".")) {
-                    moves.add(newX + "," + newY);
-                } else {
-                    if ((Character.isLowerCase(target.charAt(0)) != Character.isLowerCase(piece.charAt(0)))) {
-                        moves.add(newX + "," + newY);
-                    }
-                    break;
-                }
-                i++;
-            }
-        }
-        return moves;
-    }
-
-    // Helper methods to calculate diagonal-moving pieces (Bishop, Queen)
-    private Set<String> calculateDiagonalMoves(int x, int y, String piece) {
-        Set<String> moves = new HashSet<>();
-        String[] directions = {"up-left", "up-right", "down-left", "down-right"};
-        for (String direction : directions) {
-            int i = 1;
-            while (true) {
-                int newX = x, newY = y;
-                if (direction.equals("up-left")) {
-                    newX -= i;
-                    newY -= i;
-                }
-                if (direction.equals("up-right")) {
-                    newX += i;
-                    newY -= i;
-                }
-                if (direction.equals("down-left")) {
-                    newX -= i;
-                    newY += i;
-                }
-                if (direction.equals("down-right")) {
-                    newX += i;
-                    newY += i;
-                }
-                if (newX < 0 || newY < 0 || newX >= 8 || newY >= 8) break;
-
-                String target = board[newY][newX];
-                if (target.equals(".")) {
-                    moves.add(newX + "," + newY);
-                } else {
-                    if ((Character.isLowerCase(target.charAt(0)) != Character.isLowerCase(piece.charAt(0)))) {
-                        moves.add(newX + "," + newY);
-                    }
-                    break;
-                }
-                i++;
-            }
-        }
-        return moves;
-    }
-
     // Unused mouse events
     public void mousePressed(MouseEvent e) {}
     public void mouseReleased(MouseEvent e) {}